@@ -0,0 +1,247 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Brute-force point set like PointSET, but stored as two
+ *               growable coordinate arrays and searched with the scans of
+ *               PointScan instead of walking a red-black tree of Point2D.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+public class ArrayPointSET {
+    private double[] xs; // x coordinates in insertion order
+    private double[] ys; // y coordinates in insertion order
+    private int n; // number of points
+
+    /**
+     * Initialize an empty set.
+     */
+    public ArrayPointSET() {
+        xs = new double[16];
+        ys = new double[16];
+    }
+
+    /**
+     * Initialize the set with the distinct points ({@code x[i]}, {@code y[i]}).
+     *
+     * @param x x coordinates of the points; the array is not modified
+     * @param y y coordinates of the points; the array is not modified
+     */
+    public ArrayPointSET(double[] x, double[] y) {
+        // Throw an exception if the arrays are null or do not line up
+        if (x == null || y == null)
+            throw new IllegalArgumentException("Null argument to ArrayPointSET()");
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Coordinate arrays have different lengths");
+
+        xs = Arrays.copyOf(x, Math.max(x.length, 16));
+        ys = Arrays.copyOf(y, Math.max(y.length, 16));
+        n = FlatKdTree.distinct(xs, ys, x.length);
+    }
+
+    /**
+     * Return if the set is empty
+     *
+     * @return {@code true} if the set is empty; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Return the size of the set
+     *
+     * @return number of points
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Insert the point {@code p} if the set doesn't have the point. Checking for the point scans
+     * the whole set, so load large sets with the array constructor instead.
+     *
+     * @param p {@code Point2D} to insert
+     */
+    public void insert(Point2D p) {
+        // Throw exception if argument is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to insert()");
+
+        if (contains(p))
+            return;
+        if (n == xs.length) {
+            xs = Arrays.copyOf(xs, 2 * n);
+            ys = Arrays.copyOf(ys, 2 * n);
+        }
+        xs[n] = p.x();
+        ys[n] = p.y();
+        n++;
+    }
+
+    /**
+     * Check if the set contains the point
+     *
+     * @param p {@code Point2D} to check
+     * @return {@code true} if the point is in the set; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw an exception if the point is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        return PointScan.indexOf(xs, ys, 0, n, p.x(), p.y()) >= 0;
+    }
+
+    /**
+     * Draw the points in the set
+     */
+    public void draw() {
+        StdDraw.setPenRadius(0.01);
+        for (int i = 0; i < n; i++)
+            StdDraw.point(xs[i], ys[i]);
+    }
+
+    /**
+     * Finds all the points inside of given rectangle.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        int[] hits = new int[n];
+        int count = PointScan.range(xs, ys, 0, n, rect.xmin(), rect.ymin(), rect.xmax(),
+                                    rect.ymax(), hits, 0);
+        return points(hits, count);
+    }
+
+    /**
+     * Finds all the points within distance {@code r} of {@code center}.
+     *
+     * @param center {@code Point2D} center of the circle to search
+     * @param r      radius of the circle to search
+     * @return the points whose distance to {@code center} is at most {@code r}
+     */
+    public Iterable<Point2D> radius(Point2D center, double r) {
+        // Throw an exception if the center is null or the radius is negative
+        if (center == null)
+            throw new IllegalArgumentException("Null argument to radius()");
+        if (!(r >= 0))
+            throw new IllegalArgumentException("Radius given to radius() must not be negative");
+
+        int[] hits = new int[n];
+        int count = PointScan.radius(xs, ys, 0, n, center.x(), center.y(), r * r, hits, 0);
+        return points(hits, count);
+    }
+
+    /**
+     * Helper function to turn the indices found by a scan into points.
+     *
+     * @param hits  indices of the points
+     * @param count number of indices used
+     * @return the points
+     */
+    private Iterable<Point2D> points(int[] hits, int count) {
+        Stack<Point2D> inside = new Stack<Point2D>();
+        for (int i = 0; i < count; i++)
+            inside.push(new Point2D(xs[hits[i]], ys[hits[i]]));
+        return inside;
+    }
+
+    /**
+     * Locates the nearest point in the set to the queried point.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in set closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // No points closest if there are no points in the set
+        if (n == 0)
+            return null;
+
+        int i = PointScan.nearest(xs, ys, 0, n, p.x(), p.y(), Double.POSITIVE_INFINITY);
+        return new Point2D(xs[i], ys[i]);
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 9.1: contains(), range(), radius() & nearest() against PointSET
+        String[] input = {
+                "input0.txt", "input10-4x4-d.txt", "input20K-1x1-d.txt", "vertical7.txt",
+                "circle10000.txt", "input10K.txt"
+        };
+        System.out.println("Test 9.1: contains(), range(), radius() & nearest()");
+        for (String string : input) {
+            System.out.println(string);
+            PointReader in = new PointReader(string);
+            Point2D[] points = in.points();
+            PointSET brute = new PointSET();
+            ArrayPointSET inserted = new ArrayPointSET();
+            for (int i = 0; i < points.length; i++) {
+                brute.insert(points[i]);
+                inserted.insert(points[i]);
+            }
+            ArrayPointSET loaded = new ArrayPointSET(in.xs(), in.ys());
+            System.out.println("size: " + brute.size() + ", " + inserted.size() + ", "
+                                       + loaded.size());
+
+            boolean same = true;
+            for (ArrayPointSET set : new ArrayPointSET[] { inserted, loaded }) {
+                for (Point2D p : points)
+                    same = same && set.contains(p);
+                for (int i = 0; i < 100; i++) {
+                    Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0),
+                                            StdRandom.uniform(0.0, 1.0));
+                    same = same && brute.contains(p) == set.contains(p);
+                    if (!brute.isEmpty())
+                        same = same && brute.nearest(p).distanceSquaredTo(p)
+                                == set.nearest(p).distanceSquaredTo(p);
+
+                    double xmin = StdRandom.uniform(0.0, 1.0);
+                    double xmax = StdRandom.uniform(xmin, 1.0);
+                    double ymin = StdRandom.uniform(0.0, 1.0);
+                    double ymax = StdRandom.uniform(ymin, 1.0);
+                    RectHV r = new RectHV(xmin, ymin, xmax, ymax);
+                    int expected = 0;
+                    int inCircle = 0;
+                    for (Point2D t : brute.range(r))
+                        expected += 1;
+                    // Every point returned counts, so one outside the rectangle fails the test
+                    int found = 0;
+                    for (Point2D t : set.range(r)) {
+                        same = same && r.contains(t);
+                        found += 1;
+                    }
+                    same = same && expected == found;
+
+                    double radius = StdRandom.uniform(0.0, 0.2);
+                    RectHV box = new RectHV(p.x() - radius, p.y() - radius, p.x() + radius,
+                                            p.y() + radius);
+                    for (Point2D t : brute.range(box))
+                        inCircle += (t.distanceSquaredTo(p) <= radius * radius) ? 1 : 0;
+                    found = 0;
+                    for (Point2D t : set.radius(p, radius)) {
+                        same = same && t.distanceSquaredTo(p) <= radius * radius;
+                        found += 1;
+                    }
+                    same = same && inCircle == found;
+                }
+            }
+            System.out.println("matches PointSET: " + same);
+        }
+    }
+}
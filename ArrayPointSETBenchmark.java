@@ -0,0 +1,121 @@
+/******************************************************************************
+ *  Compilation:  javac ArrayPointSETBenchmark.java
+ *  Execution:    java ArrayPointSETBenchmark [queries]
+ *  Dependencies: ArrayPointSET.java PointScan.java PointSET.java
+ *                PointReader.java
+ *
+ *  Times nearest(), range() and radius() of PointSET against ArrayPointSET
+ *  on input10K.txt and input100K.txt, and PointScan.range() against a scan
+ *  that branches on every point, over the same arrays. The queries
+ *  are fixed by a seed: uniformly random points, rectangles and circles
+ *  up to 0.1 across. PointSET has no radius(), so that column is blank
+ *  for it.
+ *
+ *  % java ArrayPointSETBenchmark 1000
+ *  ...
+ *  input100K.txt (100000 points), 1000 queries
+ *                     nearest us     range us    radius us
+ *  PointSET              5381.48      6152.69            -
+ *  ArrayPointSET          137.75       494.11       254.48
+ *  branchy scan                        651.45
+ *  PointScan                           416.92
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class ArrayPointSETBenchmark {
+    private static final int ROUNDS = 3; // timed rounds; the fastest one counts
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // one way of answering the i-th query
+    private interface Query {
+        void run(int i);
+    }
+
+    // best time in microseconds per query over ROUNDS rounds of n queries
+    private static double time(Query query, int n) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                query.run(i);
+            best = Math.min(best, (System.nanoTime() - start) / 1e3 / n);
+        }
+        return best;
+    }
+
+    // indices of the points inside a rectangle, found with a branch per point
+    private static int branchyRange(double[] xs, double[] ys, int n, RectHV rect, int[] out) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (rect.xmin() <= x && x <= rect.xmax() && rect.ymin() <= y && y <= rect.ymax())
+                out[count++] = i;
+        }
+        return count;
+    }
+
+    private static void run(String filename, int n) {
+        PointReader in = new PointReader(filename);
+        Point2D[] points = in.points();
+        PointSET brute = new PointSET();
+        for (Point2D p : points)
+            brute.insert(p);
+        ArrayPointSET set = new ArrayPointSET(in.xs(), in.ys());
+        double[] xs = in.xs();
+        double[] ys = in.ys();
+
+        StdRandom.setSeed(20200401L);
+        Point2D[] q = new Point2D[n];
+        RectHV[] rects = new RectHV[n];
+        double[] radii = new double[n];
+        for (int i = 0; i < n; i++) {
+            q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            double x = StdRandom.uniform(0.0, 0.9);
+            double y = StdRandom.uniform(0.0, 0.9);
+            rects[i] = new RectHV(x, y, x + StdRandom.uniform(0.0, 0.1),
+                                  y + StdRandom.uniform(0.0, 0.1));
+            radii[i] = StdRandom.uniform(0.0, 0.05);
+        }
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, set.size(), n);
+        StdOut.printf("%-16s %12s %12s %12s\n", "", "nearest us", "range us", "radius us");
+        StdOut.printf("%-16s %12.2f %12.2f %12s\n", "PointSET",
+                      time(i -> sink += brute.nearest(q[i]).hashCode(), n),
+                      time(i -> {
+                          for (Point2D p : brute.range(rects[i]))
+                              sink += 1;
+                      }, n), "-");
+        StdOut.printf("%-16s %12.2f %12.2f %12.2f\n", "ArrayPointSET",
+                      time(i -> sink += set.nearest(q[i]).hashCode(), n),
+                      time(i -> {
+                          for (Point2D p : set.range(rects[i]))
+                              sink += 1;
+                      }, n),
+                      time(i -> {
+                          for (Point2D p : set.radius(q[i], radii[i]))
+                              sink += 1;
+                      }, n));
+        int[] out = new int[xs.length];
+        StdOut.printf("%-16s %12s %12.2f\n", "branchy scan", "",
+                      time(i -> sink += branchyRange(xs, ys, xs.length, rects[i], out), n));
+        StdOut.printf("%-16s %12s %12.2f\n", "PointScan", "",
+                      time(i -> sink += PointScan.range(xs, ys, 0, xs.length, rects[i].xmin(),
+                                                        rects[i].ymin(), rects[i].xmax(),
+                                                        rects[i].ymax(), out, 0), n));
+        StdOut.println();
+    }
+
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        run("input10K.txt", n);
+        run("input100K.txt", n);
+        System.err.println("sink " + sink);
+    }
+}
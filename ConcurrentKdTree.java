@@ -0,0 +1,475 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Kdtree that many threads can query without locks while other
+ *               threads insert. Nodes are never changed once created; an
+ *               insert copies the path to the new point and publishes the
+ *               new root with a single atomic swap. An insert that lands too
+ *               deep rebuilds the subtree that is out of balance first, so
+ *               the copied path stays logarithmic even for sorted input.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentKdTree {
+    private static final double ALPHA = 0.7; // largest share of a subtree one child may hold
+
+    private final AtomicReference<Node> root; // current snapshot of the tree
+
+    /**
+     * Class definition for an immutable Node. Nodes at even depths have a vertical bar and
+     * compare x coordinates, nodes at odd depths have a horizontal bar and compare y coordinates.
+     * Like {@code KdTree}, greater coordinates go left and smaller ones go right. Unlike it, a
+     * tie is broken by the other coordinate, so points on one line can still be split in half.
+     */
+    private static final class Node {
+        private final Point2D point; // point node contains
+        private final Node left; // the left node of the current node
+        private final Node right; // the right node of the current node
+        private final int count; // number of nodes in the subtree rooted at this node
+
+        /**
+         * Initialize a Node.
+         *
+         * @param point the point the node will contain
+         * @param left  the left node
+         * @param right the right node
+         */
+        Node(Point2D point, Node left, Node right) {
+            this.point = point;
+            this.left = left;
+            this.right = right;
+            this.count = 1 + ((left == null) ? 0 : left.count)
+                    + ((right == null) ? 0 : right.count);
+        }
+    }
+
+    /**
+     * Initialize the kdtree with no nodes.
+     */
+    public ConcurrentKdTree() {
+        root = new AtomicReference<Node>(null);
+    }
+
+    /**
+     * Check to see if the kdtree is empty.
+     *
+     * @return {@code true} if there are no nodes in the tree; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    /**
+     * Returns the number of points in the tree.
+     *
+     * @return number of points
+     */
+    public int size() {
+        Node node = root.get();
+        return (node == null) ? 0 : node.count;
+    }
+
+    /**
+     * Inserts the Point2D {@code p} into the kdtree if the kdtree does not already contain that
+     * point. Readers keep seeing the old tree until the new root is published. If another thread
+     * publishes a root first, the insert is redone on top of that one.
+     *
+     * @param p {@code Point2D}
+     */
+    public void insert(Point2D p) {
+        // Throw an exception if the point is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to insert()");
+
+        while (true) {
+            Node current = root.get();
+            Node updated = insert(current, p);
+            // Nothing changed if the point was already in the tree
+            if (updated == current || root.compareAndSet(current, updated))
+                return;
+        }
+    }
+
+    /**
+     * Helper function to copy the path from the root down to where {@code p} belongs. If the new
+     * node would be deeper than log base 1/alpha of the size, the lowest node on the path where
+     * one child holds more than alpha of the subtree is the scapegoat: its subtree is rebuilt
+     * balanced with {@code p} in it and only the path above it is copied.
+     *
+     * @param root {@code Node} root of the tree
+     * @param p    {@code Point2D} point to insert
+     * @return root of the new tree, or {@code root} itself if it already contains {@code p}
+     */
+    private static Node insert(Node root, Point2D p) {
+        // Walk down to where p belongs, remembering the path; nodes at even depths are vertical
+        Node[] path = new Node[32];
+        int depth = 0;
+        for (Node traverse = root; traverse != null; depth++) {
+            if (traverse.point.equals(p))
+                return root;
+            if (depth == path.length)
+                path = Arrays.copyOf(path, 2 * depth);
+            path[depth] = traverse;
+            traverse = greater(traverse.point, p, depth % 2 == 0) ? traverse.left : traverse.right;
+        }
+
+        Node node = new Node(p, null, null);
+        int top = depth; // number of nodes on the path above node that still have to be copied
+        int size = ((root == null) ? 0 : root.count) + 1;
+        if (depth > Math.log(size) / Math.log(1 / ALPHA)) {
+            // Walk back up, adding the new point to the weight of each subtree on the path
+            int weight = 1;
+            for (int i = depth - 1; i >= 0; i--) {
+                Node parent = path[i];
+                Node other = greater(parent.point, p, i % 2 == 0) ? parent.right : parent.left;
+                int otherWeight = (other == null) ? 0 : other.count;
+                int total = weight + otherWeight + 1;
+                if (Math.max(weight, otherWeight) > ALPHA * total) {
+                    node = rebuild(parent, p, i % 2 == 0);
+                    top = i;
+                    break;
+                }
+                weight = total;
+            }
+        }
+
+        // Copy the path above the new subtree, bottom up
+        for (int i = top - 1; i >= 0; i--) {
+            Node parent = path[i];
+            if (greater(parent.point, p, i % 2 == 0))
+                node = new Node(parent.point, node, parent.right);
+            else
+                node = new Node(parent.point, parent.left, node);
+        }
+        return node;
+    }
+
+    /**
+     * Helper function to build a balanced copy of the subtree rooted at {@code node} with
+     * {@code p} added.
+     *
+     * @param node     {@code Node} root of the subtree
+     * @param p        {@code Point2D} point to add
+     * @param vertical {@code true} if {@code node} has a vertical bar
+     * @return root of the balanced subtree
+     */
+    private static Node rebuild(Node node, Point2D p, boolean vertical) {
+        Point2D[] a = new Point2D[node.count + 1];
+        int n = 0;
+        a[n++] = p;
+        Stack<Node> stack = new Stack<Node>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node next = stack.pop();
+            a[n++] = next.point;
+            if (next.left != null)
+                stack.push(next.left);
+            if (next.right != null)
+                stack.push(next.right);
+        }
+        return build(a, 0, a.length, vertical);
+    }
+
+    /**
+     * Helper function to build a balanced subtree out of {@code a[lo..hi)}, with the median in
+     * the root.
+     *
+     * @param a        {@code Point2D[]} distinct points, reordered in place
+     * @param lo       first index of the points in the subtree
+     * @param hi       one past the last index of the points in the subtree
+     * @param vertical {@code true} if the root of the subtree has a vertical bar
+     * @return root of the subtree, or {@code null} if it has no points
+     */
+    private static Node build(Point2D[] a, int lo, int hi, boolean vertical) {
+        if (lo >= hi)
+            return null;
+        Comparator<Point2D> order = vertical ? Point2D.X_ORDER.thenComparing(Point2D.Y_ORDER)
+                                             : Point2D.Y_ORDER.thenComparing(Point2D.X_ORDER);
+        Arrays.sort(a, lo, hi, order);
+        int mid = lo + (hi - lo) / 2;
+        Node right = build(a, lo, mid, !vertical);
+        Node left = build(a, mid + 1, hi, !vertical);
+        return new Node(a[mid], left, right);
+    }
+
+    /**
+     * Check if {@code p} belongs on the left side of a node holding {@code point}.
+     *
+     * @param point    {@code Point2D} point of the node
+     * @param p        {@code Point2D} point to place
+     * @param vertical {@code true} if the node has a vertical bar
+     * @return {@code true} if the coordinate of {@code p} is greater, or the same and the other
+     * coordinate is greater; {@code false} otherwise
+     */
+    private static boolean greater(Point2D point, Point2D p, boolean vertical) {
+        if (vertical)
+            return point.x() < p.x() || point.x() == p.x() && point.y() < p.y();
+        return point.y() < p.y() || point.y() == p.y() && point.x() < p.x();
+    }
+
+    /**
+     * Check if the point given exists in the kdtree.
+     *
+     * @param p {@code Point2D} point to check exists
+     * @return {@code true} if the point is in the tree; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw exception if point given is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        Node traverse = root.get();
+        boolean vertical = true;
+        while (traverse != null && !traverse.point.equals(p)) {
+            traverse = greater(traverse.point, p, vertical) ? traverse.left : traverse.right;
+            vertical = !vertical;
+        }
+        return traverse != null;
+    }
+
+    /**
+     * Finds all the points inside of given rectangle in the tree as it was when the search
+     * started.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        range(inside, root.get(), true, 0, 0, 1, 1, rect);
+        return inside;
+    }
+
+    /**
+     * Helper function to traverse the subtree for points inside of the {@code query}.
+     *
+     * @param stack    {@code Stack<Point2D>} that contains all points inside the {@code query}
+     * @param node     {@code Node}
+     * @param vertical {@code true} if {@code node} has a vertical bar
+     * @param xmin     min x coordinate of the box containing {@code node}
+     * @param ymin     min y coordinate of the box containing {@code node}
+     * @param xmax     max x coordinate of the box containing {@code node}
+     * @param ymax     max y coordinate of the box containing {@code node}
+     * @param query    {@code RectHV} range indicated by the user
+     */
+    private static void range(Stack<Point2D> stack, Node node, boolean vertical, double xmin,
+                              double ymin, double xmax, double ymax, RectHV query) {
+        // No more nodes to check, or the box is outside of the query
+        if (node == null || xmax < query.xmin() || ymax < query.ymin()
+                || query.xmax() < xmin || query.ymax() < ymin)
+            return;
+
+        if (query.contains(node.point))
+            stack.push(node.point);
+
+        if (vertical) {
+            double x = node.point.x();
+            range(stack, node.right, false, xmin, ymin, x, ymax, query);
+            range(stack, node.left, false, x, ymin, xmax, ymax, query);
+        }
+        else {
+            double y = node.point.y();
+            range(stack, node.left, true, xmin, y, xmax, ymax, query);
+            range(stack, node.right, true, xmin, ymin, xmax, y, query);
+        }
+    }
+
+    /**
+     * Locates the nearest point to the queried point in the tree as it was when the search
+     * started.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in the tree closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // Search with an explicit stack instead of recursing, so no depth overflows the stack
+        Point2D best = null;
+        double bestD = Double.POSITIVE_INFINITY;
+        Node[] nodes = new Node[32]; // roots of the subtrees still to search
+        double[] gaps = new double[32]; // squared distance from p to the bar of each one's parent
+        int[] depths = new int[32]; // depth of each one; nodes at even depths are vertical
+        Node top = root.get();
+        int n = 0;
+        if (top != null) {
+            nodes[n] = top;
+            n++;
+        }
+        while (n > 0) {
+            n--;
+            Node node = nodes[n];
+            int depth = depths[n];
+            // The side of the bar away from p only counts if the bar is closer than the best
+            if (gaps[n] >= bestD)
+                continue;
+
+            double d = node.point.distanceSquaredTo(p);
+            if (d < bestD) {
+                best = node.point;
+                bestD = d;
+            }
+
+            double gap = (depth % 2 == 0) ? p.x() - node.point.x() : p.y() - node.point.y();
+            Node near = (gap > 0) ? node.left : node.right;
+            Node far = (gap > 0) ? node.right : node.left;
+            if (n + 2 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                gaps = Arrays.copyOf(gaps, 2 * gaps.length);
+                depths = Arrays.copyOf(depths, 2 * depths.length);
+            }
+            // Push the far side first so the side holding p is searched first
+            if (far != null) {
+                nodes[n] = far;
+                gaps[n] = gap * gap;
+                depths[n] = depth + 1;
+                n++;
+            }
+            if (near != null) {
+                nodes[n] = near;
+                gaps[n] = 0;
+                depths[n] = depth + 1;
+                n++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the height of the tree, counting the nodes on the longest path from the root.
+     *
+     * @return height of the tree; {@code 0} if the tree is empty
+     */
+    public int height() {
+        int height = 0;
+        Stack<Node> nodes = new Stack<Node>();
+        Stack<Integer> depths = new Stack<Integer>();
+        Node top = root.get();
+        if (top != null) {
+            nodes.push(top);
+            depths.push(1);
+        }
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int depth = depths.pop();
+            height = Math.max(height, depth);
+            if (node.left != null) {
+                nodes.push(node.left);
+                depths.push(depth + 1);
+            }
+            if (node.right != null) {
+                nodes.push(node.right);
+                depths.push(depth + 1);
+            }
+        }
+        return height;
+    }
+
+    // Test Cases
+    public static void main(String[] args) throws InterruptedException {
+        // Test 4.1: concurrent insert()
+        String[] input = {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "input100K.txt"
+        };
+        System.out.println("Test 4.1: concurrent insert()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++)
+                brute.insert(points[i]);
+
+            // Four writers insert every fourth point while a reader keeps querying
+            ConcurrentKdTree tree = new ConcurrentKdTree();
+            Thread[] writers = new Thread[4];
+            for (int w = 0; w < writers.length; w++) {
+                final int first = w;
+                writers[w] = new Thread(() -> {
+                    for (int i = first; i < points.length; i += writers.length)
+                        tree.insert(points[i]);
+                });
+                writers[w].start();
+            }
+            int snapshots = 0;
+            boolean growing = true;
+            int last = 0;
+            while (tree.size() < brute.size()) {
+                int size = tree.size();
+                growing = growing && size >= last;
+                last = size;
+                tree.nearest(new Point2D(0.5, 0.5));
+                snapshots += 1;
+            }
+            for (Thread writer : writers)
+                writer.join();
+
+            boolean same = growing && tree.size() == brute.size();
+            for (Point2D p : points)
+                same = same && tree.contains(p);
+            for (int i = 0; i < 100; i++) {
+                Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                same = same && brute.nearest(p).distanceSquaredTo(p)
+                        == tree.nearest(p).distanceSquaredTo(p);
+                RectHV r = new RectHV(0, 0, p.x(), p.y());
+                int expected = 0;
+                for (Point2D t : brute.range(r))
+                    expected += 1;
+                int found = 0;
+                for (Point2D t : tree.range(r))
+                    found += 1;
+                same = same && expected == found;
+            }
+            System.out.println("queries while inserting: " + snapshots);
+            System.out.println("matches PointSET: " + same);
+        }
+
+        // Test 4.2: sorted insert() stays shallow
+        System.out.println("Test 4.2: sorted insert()");
+        int n = 100000;
+        String[] feeds = { "(i/n, i/n)", "(0.5, i/n)", "(i/n, 0.5)" };
+        for (String feed : feeds) {
+            System.out.println(feed);
+            Point2D[] points = new Point2D[n];
+            for (int i = 0; i < n; i++) {
+                double t = (double) i / n;
+                points[i] = feed.equals("(i/n, 0.5)") ? new Point2D(t, 0.5)
+                        : feed.equals("(0.5, i/n)") ? new Point2D(0.5, t) : new Point2D(t, t);
+            }
+            ConcurrentKdTree tree = new ConcurrentKdTree();
+            long start = System.nanoTime();
+            for (Point2D p : points)
+                tree.insert(p);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            boolean same = tree.size() == n;
+            for (Point2D p : points)
+                same = same && tree.contains(p);
+            for (int i = 0; i < 100; i++) {
+                Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                double expected = Double.POSITIVE_INFINITY;
+                for (Point2D t : points)
+                    expected = Math.min(expected, t.distanceSquaredTo(p));
+                same = same && tree.nearest(p).distanceSquaredTo(p) == expected;
+            }
+            // Rebuilds keep the height within log base 1/alpha of n, plus one
+            int bound = (int) (Math.log(n) / Math.log(1 / ALPHA)) + 2;
+            System.out.printf("height: %d, at most %d: %b, %.2f s\n", tree.height(), bound,
+                              tree.height() <= bound, seconds);
+            System.out.println("matches brute force: " + same);
+        }
+    }
+}
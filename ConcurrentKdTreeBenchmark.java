@@ -0,0 +1,137 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentKdTreeBenchmark.java
+ *  Execution:    java ConcurrentKdTreeBenchmark [input.txt] [seconds] [shards]
+ *  Dependencies: ConcurrentKdTree.java KdTree.java ShardedKdTree.java PointReader.java
+ *
+ *  Measures throughput of a mixed nearest()/insert() workload with 1, 2,
+ *  4, ... threads up to the number of available processors, for a KdTree
+ *  behind one global lock, for a ConcurrentKdTree and for a ShardedKdTree
+ *  with the given number of stripes (16 by default). All start with the
+ *  points of input.txt (input100K.txt by default); writes insert new random
+ *  points. Each configuration runs for the given number of seconds (1 by
+ *  default).
+ *
+ *  % java ConcurrentKdTreeBenchmark input100K.txt 2 16
+ *  reads  threads   locked ops/s  concurrent ops/s  sharded ops/s
+ *   100%        1        412000           398000         371000
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentKdTreeBenchmark {
+
+    // the trees under test, behind a common interface
+    private interface Index {
+        void insert(Point2D p);
+
+        Point2D nearest(Point2D p);
+    }
+
+    // KdTree with every call serialized on one lock, as callers have to do today
+    private static Index locked(Point2D[] points) {
+        KdTree tree = new KdTree();
+        for (Point2D p : points)
+            tree.insert(p);
+        return new Index() {
+            public synchronized void insert(Point2D p) {
+                tree.insert(p);
+            }
+
+            public synchronized Point2D nearest(Point2D p) {
+                return tree.nearest(p);
+            }
+        };
+    }
+
+    private static Index concurrent(Point2D[] points) {
+        ConcurrentKdTree tree = new ConcurrentKdTree();
+        for (Point2D p : points)
+            tree.insert(p);
+        return new Index() {
+            public void insert(Point2D p) {
+                tree.insert(p);
+            }
+
+            public Point2D nearest(Point2D p) {
+                return tree.nearest(p);
+            }
+        };
+    }
+
+    private static Index sharded(Point2D[] points, int shards) {
+        ShardedKdTree tree = new ShardedKdTree(shards);
+        for (Point2D p : points)
+            tree.insert(p);
+        return new Index() {
+            public void insert(Point2D p) {
+                tree.insert(p);
+            }
+
+            public Point2D nearest(Point2D p) {
+                return tree.nearest(p);
+            }
+        };
+    }
+
+    // operations per second with the given share of reads
+    private static long run(Index index, int threads, double reads, double seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long seed = 31L * t + 7;
+            workers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                long count = 0;
+                while (running.get()) {
+                    Point2D p = new Point2D(random.nextDouble(), random.nextDouble());
+                    if (random.nextDouble() < reads)
+                        index.nearest(p);
+                    else
+                        index.insert(p);
+                    count += 1;
+                }
+                operations.add(count);
+            });
+            workers[t].start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread worker : workers)
+            worker.join();
+        return (long) (operations.sum() / seconds);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String filename = (args.length > 0) ? args[0] : "input100K.txt";
+        double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 1.0;
+        int shards = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+
+        Point2D[] points = new PointReader(filename).points();
+
+        StdOut.printf("%s (%d points), %.1f s per run\n", filename, points.length, seconds);
+        StdOut.printf("%5s %8s %14s %17s %14s\n",
+                      "reads", "threads", "locked ops/s", "concurrent ops/s", "sharded ops/s");
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (double reads : new double[] { 1.0, 0.99, 0.9, 0.5 }) {
+            for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+                // fresh trees for every run so earlier writes do not skew later runs
+                long locked = run(locked(points), threads, reads, seconds);
+                long concurrent = run(concurrent(points), threads, reads, seconds);
+                long split = run(sharded(points, shards), threads, reads, seconds);
+                StdOut.printf("%4.0f%% %8d %14d %17d %14d\n",
+                              100 * reads, threads, locked, concurrent, split);
+                if (threads == processors)
+                    break;
+            }
+        }
+    }
+}
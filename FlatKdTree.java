@@ -0,0 +1,535 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Immutable kdtree stored as two coordinate arrays in implicit
+ *               tree order, with no object per point. Subtrees of at most
+ *               leafSize points are left unsplit and scanned linearly.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+public class FlatKdTree {
+    private final double[] xs; // x coordinates in tree order
+    private final double[] ys; // y coordinates in tree order
+    private final int leafSize; // largest subtree stored as an unordered bucket
+
+    /**
+     * Class definition for the closest point found so far by {@code nearest()}.
+     */
+    private static class Best {
+        private int index = -1; // index of the closest point
+        private double distance = Double.POSITIVE_INFINITY; // squared distance to the target
+    }
+
+    /**
+     * Initialize the tree with the distinct points of {@code points}.
+     *
+     * @param points {@code Point2D[]} points to store; the array is not modified
+     */
+    public FlatKdTree(Point2D[] points) {
+        this(points, 1);
+    }
+
+    /**
+     * Initialize the tree with the distinct points of {@code points}, stopping the split at
+     * subtrees of at most {@code leafSize} points.
+     *
+     * @param points   {@code Point2D[]} points to store; the array is not modified
+     * @param leafSize largest number of points scanned linearly instead of split further
+     */
+    public FlatKdTree(Point2D[] points, int leafSize) {
+        // Throw an exception if the points or any of the points are null
+        if (points == null)
+            throw new IllegalArgumentException("Null argument to FlatKdTree()");
+        if (leafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be positive: " + leafSize);
+        double[] x = new double[points.length];
+        double[] y = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null)
+                throw new IllegalArgumentException("Null point in argument to FlatKdTree()");
+            x[i] = points[i].x();
+            y[i] = points[i].y();
+        }
+
+        int n = distinct(x, y, points.length);
+        this.xs = Arrays.copyOf(x, n);
+        this.ys = Arrays.copyOf(y, n);
+        // No bucket holds more than every point, and range() sizes its buffer by the leaf size
+        this.leafSize = Math.min(leafSize, Math.max(n, 1));
+        build(0, n, 0);
+    }
+
+    /**
+     * Initialize the tree with the distinct points ({@code x[i]}, {@code y[i]}).
+     *
+     * @param x x coordinates of the points; the array is not modified
+     * @param y y coordinates of the points; the array is not modified
+     */
+    public FlatKdTree(double[] x, double[] y) {
+        this(x, y, 1);
+    }
+
+    /**
+     * Initialize the tree with the distinct points ({@code x[i]}, {@code y[i]}), stopping the
+     * split at subtrees of at most {@code leafSize} points.
+     *
+     * @param x        x coordinates of the points; the array is not modified
+     * @param y        y coordinates of the points; the array is not modified
+     * @param leafSize largest number of points scanned linearly instead of split further
+     */
+    public FlatKdTree(double[] x, double[] y, int leafSize) {
+        // Throw an exception if the arrays are null or do not line up
+        if (x == null || y == null)
+            throw new IllegalArgumentException("Null argument to FlatKdTree()");
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Coordinate arrays have different lengths");
+        if (leafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be positive: " + leafSize);
+
+        double[] xc = x.clone();
+        double[] yc = y.clone();
+        int n = distinct(xc, yc, xc.length);
+        this.xs = Arrays.copyOf(xc, n);
+        this.ys = Arrays.copyOf(yc, n);
+        // No bucket holds more than every point, and range() sizes its buffer by the leaf size
+        this.leafSize = Math.min(leafSize, Math.max(n, 1));
+        build(0, n, 0);
+    }
+
+    /**
+     * Check to see if the tree is empty.
+     *
+     * @return {@code true} if there are no points in the tree; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return xs.length == 0;
+    }
+
+    /**
+     * Returns the number of points in the tree.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the largest number of points a leaf bucket holds: the leaf size given to the
+     * constructor, or the number of points if that is smaller.
+     *
+     * @return leaf size, {@code 1} if every point is a node of its own
+     */
+    public int leafSize() {
+        return leafSize;
+    }
+
+    /**
+     * Writes the tree to {@code filename} as a snapshot that {@code MappedKdTree} can open without
+     * rebuilding it.
+     *
+     * @param filename name of the file to write; an existing file is replaced
+     */
+    public void save(String filename) {
+        // Throw an exception if the file name is null
+        if (filename == null)
+            throw new IllegalArgumentException("Null argument to save()");
+
+        // Snapshots hold one point per node, so a bucketed tree is split all the way down first
+        if (leafSize > 1)
+            new FlatKdTree(xs, ys).save(filename);
+        else
+            MappedKdTree.write(filename, xs, ys);
+    }
+
+    /**
+     * Helper function to arrange {@code [lo..hi)} as a subtree. The median on the axis of
+     * {@code depth} goes in the middle slot, smaller or equal points go before it and greater or
+     * equal points go after it, and both halves are arranged the same way one level deeper. A
+     * subtree of at most {@code leafSize} points is left as it is.
+     *
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root; even depths split on x, odd depths on y
+     */
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= leafSize)
+            return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0 ? xs : ys);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Helper function to move the {@code k}th smallest key of {@code [lo..hi]} into slot
+     * {@code k} using quickselect, moving the y coordinates along with the x coordinates.
+     *
+     * @param lo   first index of the range
+     * @param hi   last index of the range
+     * @param k    index to fill
+     * @param keys {@code xs} or {@code ys}, the coordinate to order by
+     */
+    private void select(int lo, int hi, int k, double[] keys) {
+        while (lo < hi) {
+            // 3-way partition into smaller, equal and greater keys than the pivot
+            double pivot = keys[lo + (hi - lo) / 2];
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                if (keys[i] < pivot)
+                    swap(xs, ys, lt++, i++);
+                else if (keys[i] > pivot)
+                    swap(xs, ys, i, gt--);
+                else
+                    i++;
+            }
+            if (k < lt)
+                hi = lt - 1;
+            else if (k > gt)
+                lo = gt + 1;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Helper function to remove duplicate points from the first {@code n} points of {@code x}
+     * and {@code y}. The remaining points are moved to the front of the arrays in sorted order.
+     *
+     * @param x x coordinates
+     * @param y y coordinates
+     * @param n number of points
+     * @return number of distinct points
+     */
+    static int distinct(double[] x, double[] y, int n) {
+        sort(x, y, 0, n - 1);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || x[m - 1] != x[i] || y[m - 1] != y[i]) {
+                x[m] = x[i];
+                y[m] = y[i];
+                m++;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Helper function to sort the points in {@code [lo..hi]} by x coordinate and then by y
+     * coordinate using 3-way quicksort.
+     *
+     * @param x  x coordinates
+     * @param y  y coordinates
+     * @param lo first index of the range
+     * @param hi last index of the range
+     */
+    private static void sort(double[] x, double[] y, int lo, int hi) {
+        while (lo < hi) {
+            int mid = lo + (hi - lo) / 2;
+            double px = x[mid];
+            double py = y[mid];
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                if (x[i] < px || x[i] == px && y[i] < py)
+                    swap(x, y, lt++, i++);
+                else if (x[i] > px || x[i] == px && y[i] > py)
+                    swap(x, y, i, gt--);
+                else
+                    i++;
+            }
+            // Recurse into the smaller side and loop on the larger one to bound the stack
+            if (lt - lo < hi - gt) {
+                sort(x, y, lo, lt - 1);
+                lo = gt + 1;
+            }
+            else {
+                sort(x, y, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+    }
+
+    /**
+     * Swaps point {@code i} and point {@code j}.
+     *
+     * @param x x coordinates
+     * @param y y coordinates
+     * @param i index of the first point
+     * @param j index of the second point
+     */
+    private static void swap(double[] x, double[] y, int i, int j) {
+        double temp = x[i];
+        x[i] = x[j];
+        x[j] = temp;
+        temp = y[i];
+        y[i] = y[j];
+        y[j] = temp;
+    }
+
+    /**
+     * Check if the point given exists in the tree.
+     *
+     * @param p {@code Point2D} point to check exists
+     * @return {@code true} if the point is in the tree; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw exception if point given is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        return contains(0, xs.length, 0, p.x(), p.y());
+    }
+
+    /**
+     * Helper function to search {@code [lo..hi)} for the point ({@code x}, {@code y}).
+     *
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param x     x coordinate of the point
+     * @param y     y coordinate of the point
+     * @return {@code true} if the subtree has the point; {@code false} otherwise
+     */
+    private boolean contains(int lo, int hi, int depth, double x, double y) {
+        while (lo < hi) {
+            if (hi - lo <= leafSize)
+                return PointScan.indexOf(xs, ys, lo, hi, x, y) >= 0;
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] == x && ys[mid] == y)
+                return true;
+            double key = ((depth & 1) == 0) ? x : y;
+            double split = ((depth & 1) == 0) ? xs[mid] : ys[mid];
+            // Points equal to the split can be on either side, so search both
+            if (key == split && contains(lo, mid, depth + 1, x, y))
+                return true;
+            if (key < split)
+                hi = mid;
+            else
+                lo = mid + 1;
+            depth += 1;
+        }
+        return false;
+    }
+
+    /**
+     * Finds all the points inside of given rectangle.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        int[] hits = new int[leafSize];
+        range(inside, hits, 0, xs.length, 0, rect.xmin(), rect.ymin(), rect.xmax(), rect.ymax());
+        return inside;
+    }
+
+    /**
+     * Helper function to collect the points of {@code [lo..hi)} inside of the query rectangle.
+     *
+     * @param stack {@code Stack<Point2D>} that contains all points inside the query
+     * @param hits  scratch space for the indices found in a leaf bucket
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param xmin  min x coordinate of the query
+     * @param ymin  min y coordinate of the query
+     * @param xmax  max x coordinate of the query
+     * @param ymax  max y coordinate of the query
+     */
+    private void range(Stack<Point2D> stack, int[] hits, int lo, int hi, int depth,
+                       double xmin, double ymin, double xmax, double ymax) {
+        if (lo >= hi)
+            return;
+        if (hi - lo <= leafSize) {
+            int count = PointScan.range(xs, ys, lo, hi, xmin, ymin, xmax, ymax, hits, 0);
+            for (int i = 0; i < count; i++)
+                stack.push(new Point2D(xs[hits[i]], ys[hits[i]]));
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        double x = xs[mid];
+        double y = ys[mid];
+        if (xmin <= x && x <= xmax && ymin <= y && y <= ymax)
+            stack.push(new Point2D(x, y));
+
+        // Only search the halves that the query reaches
+        double min = ((depth & 1) == 0) ? xmin : ymin;
+        double max = ((depth & 1) == 0) ? xmax : ymax;
+        double split = ((depth & 1) == 0) ? x : y;
+        if (min <= split)
+            range(stack, hits, lo, mid, depth + 1, xmin, ymin, xmax, ymax);
+        if (max >= split)
+            range(stack, hits, mid + 1, hi, depth + 1, xmin, ymin, xmax, ymax);
+    }
+
+    /**
+     * Locates the nearest point in the tree to the queried point.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in the tree closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // No points closest if there are no points in the tree
+        if (xs.length == 0)
+            return null;
+
+        Best best = new Best();
+        nearest(best, 0, xs.length, 0, p.x(), p.y());
+        return new Point2D(xs[best.index], ys[best.index]);
+    }
+
+    /**
+     * Locates the nearest point in the tree to each of the queried points. The queries are
+     * answered in Hilbert curve order rather than the order given, so consecutive searches read
+     * mostly the same parts of the coordinate arrays while they are still in cache.
+     *
+     * @param queries {@code Point2D[]} queried points; the array is not modified
+     * @return the point closest to {@code queries[i]} at index {@code i}
+     */
+    public Point2D[] nearestAll(Point2D[] queries) {
+        // Throw exception if given null
+        if (queries == null)
+            throw new IllegalArgumentException("Null argument to nearestAll()");
+        for (Point2D p : queries) {
+            if (p == null)
+                throw new IllegalArgumentException("Null point in argument to nearestAll()");
+        }
+
+        Point2D[] nearest = new Point2D[queries.length];
+        for (int i : SpaceFillingCurve.HILBERT.order(queries))
+            nearest[i] = nearest(queries[i]);
+        return nearest;
+    }
+
+    /**
+     * Helper function to search {@code [lo..hi)} for a point closer than {@code best}. The half
+     * holding the target is searched first and the other half only if the splitting line is
+     * closer than the best point found. A leaf bucket is scanned point by point.
+     *
+     * @param best  {@code Best} closest point found so far
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param x     x coordinate of the target
+     * @param y     y coordinate of the target
+     */
+    private void nearest(Best best, int lo, int hi, int depth, double x, double y) {
+        if (lo >= hi)
+            return;
+        if (hi - lo <= leafSize) {
+            int i = PointScan.nearest(xs, ys, lo, hi, x, y, best.distance);
+            if (i >= 0) {
+                double dx = xs[i] - x;
+                double dy = ys[i] - y;
+                best.distance = dx * dx + dy * dy;
+                best.index = i;
+            }
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        double dx = xs[mid] - x;
+        double dy = ys[mid] - y;
+        double d = dx * dx + dy * dy;
+        if (d < best.distance) {
+            best.distance = d;
+            best.index = mid;
+        }
+
+        // Signed distance from the target to the splitting line
+        double gap = ((depth & 1) == 0) ? dx : dy;
+        if (gap > 0) {
+            nearest(best, lo, mid, depth + 1, x, y);
+            if (gap * gap < best.distance)
+                nearest(best, mid + 1, hi, depth + 1, x, y);
+        }
+        else {
+            nearest(best, mid + 1, hi, depth + 1, x, y);
+            if (gap * gap < best.distance)
+                nearest(best, lo, mid, depth + 1, x, y);
+        }
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 3.1: contains(), range() & nearest() against PointSET
+        String[] input = {
+                "input0.txt", "input10-4x4-d.txt", "input20K-1x1-d.txt", "vertical7.txt",
+                "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 3.1: contains(), range() & nearest()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++)
+                brute.insert(points[i]);
+            FlatKdTree tree = new FlatKdTree(points);
+            System.out.println("size: " + brute.size() + ", " + tree.size());
+            System.out.println("matches PointSET: " + matches(brute, points, tree));
+        }
+        System.out.println("---");
+
+        // Test 3.2: the same with leaf buckets
+        System.out.println("Test 3.2: leaf buckets");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++)
+                brute.insert(points[i]);
+            boolean same = true;
+            for (int leafSize : new int[] { 2, 8, 32, 1000 })
+                same = same && matches(brute, points, new FlatKdTree(points, leafSize));
+            // A leaf size past the number of points makes the whole tree one bucket
+            FlatKdTree bucket = new FlatKdTree(points, Integer.MAX_VALUE);
+            same = same && bucket.leafSize() == Math.max(bucket.size(), 1)
+                    && matches(brute, points, bucket);
+            System.out.println("matches PointSET: " + same);
+        }
+    }
+
+    // checks contains(), range() and nearest() of tree against brute for random queries
+    private static boolean matches(PointSET brute, Point2D[] points, FlatKdTree tree) {
+        boolean same = brute.size() == tree.size();
+        for (Point2D p : points)
+            same = same && tree.contains(p);
+        for (int i = 0; i < 100; i++) {
+            Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            same = same && brute.contains(p) == tree.contains(p);
+            if (!brute.isEmpty())
+                same = same && brute.nearest(p).distanceSquaredTo(p)
+                        == tree.nearest(p).distanceSquaredTo(p);
+
+            double xmin = StdRandom.uniform(0.0, 1.0);
+            double xmax = StdRandom.uniform(xmin, 1.0);
+            double ymin = StdRandom.uniform(0.0, 1.0);
+            double ymax = StdRandom.uniform(ymin, 1.0);
+            RectHV r = new RectHV(xmin, ymin, xmax, ymax);
+            int expected = 0;
+            for (Point2D t : brute.range(r))
+                expected += 1;
+            int found = 0;
+            for (Point2D t : tree.range(r))
+                found += r.contains(t) ? 1 : 0;
+            same = same && expected == found;
+        }
+        return same;
+    }
+}
@@ -0,0 +1,81 @@
+/******************************************************************************
+ *  Compilation:  javac FlatKdTreeLeafBenchmark.java
+ *  Execution:    java FlatKdTreeLeafBenchmark [queries]
+ *  Dependencies: FlatKdTree.java PointReader.java
+ *
+ *  Times FlatKdTree build(), range() and nearest() for leaf sizes from 1
+ *  (one point per node) to 64 over input100K.txt, input200K.txt and
+ *  circle10000.txt. The queries are fixed by a seed: rectangles up to 0.1
+ *  wide and tall placed anywhere in the unit square, and uniformly random
+ *  points for nearest().
+ *
+ *  % java FlatKdTreeLeafBenchmark 50000
+ *  input100K.txt (100000 points), 50000 queries
+ *   leaf   build ms   range us  nearest us
+ *      1      72.53       9.50        0.55
+ *      8      52.27       6.89        0.34
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class FlatKdTreeLeafBenchmark {
+    private static final int[] LEAF_SIZES = { 1, 2, 4, 8, 16, 32, 64 };
+    private static final int ROUNDS = 3; // timed rounds per leaf size; the fastest one counts
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    private static void run(String filename, int n) {
+        Point2D[] points = new PointReader(filename).points();
+        StdRandom.setSeed(20200401L);
+        RectHV[] rects = new RectHV[n];
+        Point2D[] q = new Point2D[n];
+        for (int i = 0; i < n; i++) {
+            double x = StdRandom.uniform(0.0, 0.9);
+            double y = StdRandom.uniform(0.0, 0.9);
+            rects[i] = new RectHV(x, y, x + StdRandom.uniform(0.0, 0.1),
+                                  y + StdRandom.uniform(0.0, 0.1));
+            q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        }
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, points.length, n);
+        StdOut.printf("%5s %10s %10s %11s\n", "leaf", "build ms", "range us", "nearest us");
+        for (int leafSize : LEAF_SIZES) {
+            double build = Double.POSITIVE_INFINITY;
+            double range = Double.POSITIVE_INFINITY;
+            double nearest = Double.POSITIVE_INFINITY;
+            // The first round also warms up the JIT, so report the best of the rounds
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                FlatKdTree tree = new FlatKdTree(points, leafSize);
+                build = Math.min(build, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    for (Point2D p : tree.range(rects[i]))
+                        sink += 1;
+                }
+                range = Math.min(range, (System.nanoTime() - start) / 1e3 / n);
+
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++)
+                    sink += tree.nearest(q[i]).hashCode();
+                nearest = Math.min(nearest, (System.nanoTime() - start) / 1e3 / n);
+            }
+            StdOut.printf("%5d %10.2f %10.2f %11.2f\n", leafSize, build, range, nearest);
+        }
+        StdOut.println();
+    }
+
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        run("input100K.txt", n);
+        run("input200K.txt", n);
+        run("circle10000.txt", n);
+        System.err.println("sink " + sink);
+    }
+}
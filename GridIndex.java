@@ -0,0 +1,342 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Immutable uniform grid over the unit square. The points are
+ *               sorted by cell, row by row, into two coordinate arrays, and
+ *               cellStart[c] is the index of the first point of cell c, so a
+ *               row of cells is one contiguous slice. Points outside the unit
+ *               square go in the nearest border cell.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+public class GridIndex {
+    private final int resolution; // cells per side
+    private final double[] xs; // x coordinates in cell order
+    private final double[] ys; // y coordinates in cell order
+    private final int[] cellStart; // first point of every cell, plus n at the end
+
+    /**
+     * Initialize the grid with the distinct points of {@code points} and about two points per
+     * cell.
+     *
+     * @param points {@code Point2D[]} points to store; the array is not modified
+     */
+    public GridIndex(Point2D[] points) {
+        this(points, 0);
+    }
+
+    /**
+     * Initialize the grid with the distinct points of {@code points} and {@code resolution}
+     * cells per side.
+     *
+     * @param points     {@code Point2D[]} points to store; the array is not modified
+     * @param resolution cells per side, or {@code 0} for about two points per cell
+     */
+    public GridIndex(Point2D[] points, int resolution) {
+        this(xs(points), ys(points), resolution);
+    }
+
+    /**
+     * Initialize the grid with the distinct points ({@code x[i]}, {@code y[i]}) and about two
+     * points per cell.
+     *
+     * @param x x coordinates of the points; the array is not modified
+     * @param y y coordinates of the points; the array is not modified
+     */
+    public GridIndex(double[] x, double[] y) {
+        this(x, y, 0);
+    }
+
+    /**
+     * Initialize the grid with the distinct points ({@code x[i]}, {@code y[i]}) and
+     * {@code resolution} cells per side.
+     *
+     * @param x          x coordinates of the points; the array is not modified
+     * @param y          y coordinates of the points; the array is not modified
+     * @param resolution cells per side, or {@code 0} for about two points per cell
+     */
+    public GridIndex(double[] x, double[] y, int resolution) {
+        // Throw an exception if the arrays are null or do not line up
+        if (x == null || y == null)
+            throw new IllegalArgumentException("Null argument to GridIndex()");
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Coordinate arrays have different lengths");
+        if (resolution < 0 || resolution > 46340)
+            throw new IllegalArgumentException("Resolution out of range: " + resolution);
+
+        double[] xc = x.clone();
+        double[] yc = y.clone();
+        int n = FlatKdTree.distinct(xc, yc, xc.length);
+        if (resolution == 0)
+            resolution = Math.max(1, (int) Math.ceil(Math.sqrt(n / 2.0)));
+        this.resolution = resolution;
+
+        // Counting sort by cell: count, turn the counts into starts, then place
+        int cells = resolution * resolution;
+        int[] cell = new int[n];
+        cellStart = new int[cells + 1];
+        for (int i = 0; i < n; i++) {
+            cell[i] = row(yc[i]) * resolution + column(xc[i]);
+            cellStart[cell[i] + 1] += 1;
+        }
+        for (int c = 0; c < cells; c++)
+            cellStart[c + 1] += cellStart[c];
+        int[] next = Arrays.copyOf(cellStart, cells);
+        xs = new double[n];
+        ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            int j = next[cell[i]]++;
+            xs[j] = xc[i];
+            ys[j] = yc[i];
+        }
+    }
+
+    /**
+     * Helper function to collect the x coordinates of {@code points}.
+     *
+     * @param points points to read
+     * @return x coordinates
+     */
+    private static double[] xs(Point2D[] points) {
+        // Throw an exception if the points or any of the points are null
+        if (points == null)
+            throw new IllegalArgumentException("Null argument to GridIndex()");
+        double[] x = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null)
+                throw new IllegalArgumentException("Null point in argument to GridIndex()");
+            x[i] = points[i].x();
+        }
+        return x;
+    }
+
+    /**
+     * Helper function to collect the y coordinates of {@code points}.
+     *
+     * @param points points to read, already checked by {@code xs()}
+     * @return y coordinates
+     */
+    private static double[] ys(Point2D[] points) {
+        double[] y = new double[points.length];
+        for (int i = 0; i < points.length; i++)
+            y[i] = points[i].y();
+        return y;
+    }
+
+    /**
+     * Check to see if the grid is empty.
+     *
+     * @return {@code true} if there are no points in the grid; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return xs.length == 0;
+    }
+
+    /**
+     * Returns the number of points in the grid.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the number of cells per side.
+     *
+     * @return resolution of the grid
+     */
+    public int resolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the column of the cells holding x coordinate {@code x}.
+     *
+     * @param x x coordinate
+     * @return column, clamped to the grid
+     */
+    private int column(double x) {
+        int c = (int) (x * resolution);
+        return (c < 0) ? 0 : (c >= resolution) ? resolution - 1 : c;
+    }
+
+    /**
+     * Returns the row of the cells holding y coordinate {@code y}.
+     *
+     * @param y y coordinate
+     * @return row, clamped to the grid
+     */
+    private int row(double y) {
+        int r = (int) (y * resolution);
+        return (r < 0) ? 0 : (r >= resolution) ? resolution - 1 : r;
+    }
+
+    /**
+     * Draw the points in the grid
+     */
+    public void draw() {
+        StdDraw.setPenRadius(0.01);
+        for (int i = 0; i < xs.length; i++)
+            StdDraw.point(xs[i], ys[i]);
+    }
+
+    /**
+     * Check if the point given exists in the grid.
+     *
+     * @param p {@code Point2D} point to check exists
+     * @return {@code true} if the point is in the grid; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw exception if point given is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        int c = row(p.y()) * resolution + column(p.x());
+        return PointScan.indexOf(xs, ys, cellStart[c], cellStart[c + 1], p.x(), p.y()) >= 0;
+    }
+
+    /**
+     * Finds all the points inside of given rectangle.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        int c0 = column(rect.xmin());
+        int c1 = column(rect.xmax());
+        int[] hits = new int[0];
+        // The cells of a row are contiguous, so scan each row's span in one go
+        for (int r = row(rect.ymin()); r <= row(rect.ymax()); r++) {
+            int lo = cellStart[r * resolution + c0];
+            int hi = cellStart[r * resolution + c1 + 1];
+            if (hits.length < hi - lo)
+                hits = new int[Math.max(hi - lo, 2 * hits.length)];
+            int count = PointScan.range(xs, ys, lo, hi, rect.xmin(), rect.ymin(), rect.xmax(),
+                                        rect.ymax(), hits, 0);
+            for (int i = 0; i < count; i++)
+                inside.push(new Point2D(xs[hits[i]], ys[hits[i]]));
+        }
+        return inside;
+    }
+
+    /**
+     * Locates the nearest point in the grid to the queried point. The cells are searched in
+     * square rings around the cell of the query, and the search stops once every point left
+     * lies farther away than the closest point found.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in the grid closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // No points closest if there are no points in the grid
+        if (xs.length == 0)
+            return null;
+
+        double x = p.x();
+        double y = p.y();
+        int cx = column(x);
+        int cy = row(y);
+        int best = -1;
+        double bestD = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ; ring++) {
+            int r0 = cy - ring, r1 = cy + ring;
+            int c0 = cx - ring, c1 = cx + ring;
+            // Rows of the ring: the full top and bottom rows, and the two side cells in between
+            for (int r = Math.max(r0, 0); r <= Math.min(r1, resolution - 1); r++) {
+                boolean edge = r == r0 || r == r1;
+                int step = edge ? 1 : c1 - c0;
+                for (int c = c0; c <= c1; c += step) {
+                    if (c < 0 || c >= resolution)
+                        continue;
+                    int cell = r * resolution + c;
+                    int i = PointScan.nearest(xs, ys, cellStart[cell], cellStart[cell + 1], x, y,
+                                              bestD);
+                    if (i >= 0) {
+                        best = i;
+                        bestD = (xs[i] - x) * (xs[i] - x) + (ys[i] - y) * (ys[i] - y);
+                    }
+                }
+            }
+
+            // Every point not searched yet lies outside the block of cells searched so far
+            double gap = Double.POSITIVE_INFINITY;
+            if (c0 > 0)
+                gap = Math.min(gap, x - (double) c0 / resolution);
+            if (c1 < resolution - 1)
+                gap = Math.min(gap, (double) (c1 + 1) / resolution - x);
+            if (r0 > 0)
+                gap = Math.min(gap, y - (double) r0 / resolution);
+            if (r1 < resolution - 1)
+                gap = Math.min(gap, (double) (r1 + 1) / resolution - y);
+            if (gap == Double.POSITIVE_INFINITY || best >= 0 && gap * gap >= bestD)
+                return new Point2D(xs[best], ys[best]);
+        }
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 10.1: contains(), range() & nearest() against PointSET
+        String[] input = {
+                "input0.txt", "input10-4x4-d.txt", "input20K-1x1-d.txt", "vertical7.txt",
+                "circle10000.txt", "input5000-16x16.txt", "input10K-128x128.txt", "input100K.txt"
+        };
+        System.out.println("Test 10.1: contains(), range() & nearest()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++)
+                brute.insert(points[i]);
+            boolean same = true;
+            for (int resolution : new int[] { 0, 1, 7, 128 }) {
+                GridIndex grid = new GridIndex(points, resolution);
+                same = same && brute.size() == grid.size();
+                for (Point2D p : points)
+                    same = same && grid.contains(p);
+                for (int i = 0; i < 100; i++) {
+                    // Some queries fall outside the unit square
+                    Point2D p = new Point2D(StdRandom.uniform(-0.5, 1.5),
+                                            StdRandom.uniform(-0.5, 1.5));
+                    same = same && brute.contains(p) == grid.contains(p);
+                    if (!brute.isEmpty())
+                        same = same && brute.nearest(p).distanceSquaredTo(p)
+                                == grid.nearest(p).distanceSquaredTo(p);
+
+                    double xmin = StdRandom.uniform(0.0, 1.0);
+                    double xmax = StdRandom.uniform(xmin, 1.0);
+                    double ymin = StdRandom.uniform(0.0, 1.0);
+                    double ymax = StdRandom.uniform(ymin, 1.0);
+                    RectHV r = new RectHV(xmin, ymin, xmax, ymax);
+                    int expected = 0;
+                    for (Point2D t : brute.range(r))
+                        expected += 1;
+                    // Every point returned counts, so one outside the rectangle fails the test
+                    int found = 0;
+                    for (Point2D t : grid.range(r)) {
+                        same = same && r.contains(t);
+                        found += 1;
+                    }
+                    same = same && expected == found;
+                }
+            }
+            System.out.println("matches PointSET: " + same);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/******************************************************************************
+ *  Compilation:  javac GridIndexBenchmark.java
+ *  Execution:    java GridIndexBenchmark [queries]
+ *  Dependencies: GridIndex.java KdTree.java FlatKdTree.java PointReader.java
+ *
+ *  Times range() and nearest() of GridIndex at several resolutions against
+ *  KdTree and FlatKdTree on input5000-16x16.txt, input10K-128x128.txt and
+ *  input200K.txt. Resolution 0 picks about two points per cell. The
+ *  queries are fixed by a seed: rectangles up to 0.1 wide and tall placed
+ *  anywhere in the unit square, and uniformly random points for nearest().
+ *
+ *  % java GridIndexBenchmark 50000
+ *  ...
+ *  input200K.txt (200000 points), 50000 queries
+ *  index                range us  nearest us
+ *  KdTree                  33.94        1.41
+ *  FlatKdTree              14.79        0.66
+ *  GridIndex 0             11.83        0.32
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.function.Function;
+
+public class GridIndexBenchmark {
+    private static final int ROUNDS = 3; // timed rounds; the fastest one counts
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // prints the best time per query over ROUNDS rounds of each kind of query
+    private static void report(String name, RectHV[] rects, Point2D[] q,
+                               Function<RectHV, Iterable<Point2D>> range,
+                               Function<Point2D, Point2D> nearest) {
+        int n = q.length;
+        double rangeTime = Double.POSITIVE_INFINITY;
+        double nearestTime = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                for (Point2D p : range.apply(rects[i]))
+                    sink += 1;
+            }
+            rangeTime = Math.min(rangeTime, (System.nanoTime() - start) / 1e3 / n);
+
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                sink += nearest.apply(q[i]).hashCode();
+            nearestTime = Math.min(nearestTime, (System.nanoTime() - start) / 1e3 / n);
+        }
+        StdOut.printf("%-16s %12.2f %11.2f\n", name, rangeTime, nearestTime);
+    }
+
+    private static void run(String filename, int n, int[] resolutions) {
+        Point2D[] points = new PointReader(filename).points();
+        StdRandom.setSeed(20200401L);
+        RectHV[] rects = new RectHV[n];
+        Point2D[] q = new Point2D[n];
+        for (int i = 0; i < n; i++) {
+            double x = StdRandom.uniform(0.0, 0.9);
+            double y = StdRandom.uniform(0.0, 0.9);
+            rects[i] = new RectHV(x, y, x + StdRandom.uniform(0.0, 0.1),
+                                  y + StdRandom.uniform(0.0, 0.1));
+            q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        }
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, points.length, n);
+        StdOut.printf("%-16s %12s %11s\n", "index", "range us", "nearest us");
+        KdTree tree = KdTree.build(points);
+        report("KdTree", rects, q, tree::range, tree::nearest);
+        FlatKdTree flat = new FlatKdTree(points);
+        report("FlatKdTree", rects, q, flat::range, flat::nearest);
+        for (int resolution : resolutions) {
+            GridIndex grid = new GridIndex(points, resolution);
+            report("GridIndex " + resolution, rects, q, grid::range, grid::nearest);
+        }
+        StdOut.println();
+    }
+
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        run("input5000-16x16.txt", n, new int[] { 0, 4, 16, 64 });
+        run("input10K-128x128.txt", n, new int[] { 0, 32, 128, 256 });
+        run("input200K.txt", n, new int[] { 0, 128, 512 });
+        System.err.println("sink " + sink);
+    }
+}
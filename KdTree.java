@@ -4,16 +4,31 @@
  *  Description:
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.MaxPQ;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.SET;
 import edu.princeton.cs.algs4.Stack;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 public class KdTree {
+    private static final int REBUILD_LIMIT = 1 << 12; // largest subtree remove() rebuilds
+
     private Node root; // starting node for the kdtree
     private int size; // keeps track of the number of nodes in the tree
+    private QueryStats stats; // counters for searches, or null when searches are not counted
+    private NearestCache cache; // answers of earlier nearest() calls, or null when not cached
+    private double rebuildThreshold = 0.5; // share of removed nodes that triggers a rebuild
+    private double alpha = 1.0; // largest share of a subtree one child may hold after insert()
 
     /**
      * Define the orientations of the bars that can be given to a node.
@@ -30,6 +45,9 @@ public class KdTree {
         private Node left; // the left node of the current node
         private Node right; // the right node of the current node
         private Orientation bar; // split of the node
+        private int count; // number of points still in the subtree rooted at this node
+        private int tombstones; // number of removed nodes in the subtree rooted at this node
+        private boolean deleted; // whether this node's point has been removed
 
         /**
          * Initialize a Node.
@@ -42,6 +60,9 @@ public class KdTree {
             this.bar = b;
             this.left = null;
             this.right = null;
+            this.count = 1;
+            this.tombstones = 0;
+            this.deleted = false;
         }
 
         /**
@@ -98,6 +119,60 @@ public class KdTree {
             return this.right;
         }
 
+        /**
+         * Setter for {@code count}.
+         *
+         * @param count number of points still in the subtree rooted at this node
+         */
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        /**
+         * Returns {@code count}.
+         *
+         * @return number of points still in the subtree rooted at this node
+         */
+        public int count() {
+            return this.count;
+        }
+
+        /**
+         * Setter for {@code tombstones}.
+         *
+         * @param tombstones number of removed nodes in the subtree rooted at this node
+         */
+        public void setTombstones(int tombstones) {
+            this.tombstones = tombstones;
+        }
+
+        /**
+         * Returns {@code tombstones}.
+         *
+         * @return number of removed nodes in the subtree rooted at this node
+         */
+        public int tombstones() {
+            return this.tombstones;
+        }
+
+        /**
+         * Setter for {@code deleted}.
+         *
+         * @param deleted whether this node's point has been removed
+         */
+        public void setDeleted(boolean deleted) {
+            this.deleted = deleted;
+        }
+
+        /**
+         * Returns {@code deleted}.
+         *
+         * @return {@code true} if this node's point has been removed; {@code false} otherwise
+         */
+        public boolean isDeleted() {
+            return this.deleted;
+        }
+
         /**
          * Return {@code point}.
          *
@@ -116,6 +191,237 @@ public class KdTree {
         size = 0;
     }
 
+    /**
+     * Builds a balanced kdtree containing the distinct points of {@code points}. Each node splits
+     * its subtree on the median of its coordinate, so the tree has a depth of about log2(n) no
+     * matter what order the points come in (only points sharing a coordinate can push that up).
+     *
+     * @param points {@code Point2D[]} points to load; the array is not modified
+     * @return {@code KdTree} containing every distinct point in {@code points}
+     */
+    public static KdTree build(Point2D[] points) {
+        KdTree tree = new KdTree();
+        Point2D[] a = distinct(points, false);
+        tree.root = tree.buildSubtree(a, 0, a.length, Orientation.VERTICAL);
+        tree.size = a.length;
+        return tree;
+    }
+
+    /**
+     * Builds the same balanced kdtree as {@code build(points)} using the threads of {@code pool}.
+     * Subtrees with more than {@code cutoff} points are built as separate fork/join tasks and
+     * smaller subtrees are built sequentially. The tree has exactly the same shape as the one
+     * {@code build(points)} returns.
+     *
+     * @param points {@code Point2D[]} points to load; the array is not modified
+     * @param pool   {@code ForkJoinPool} that runs the tasks
+     * @param cutoff largest number of points in a subtree that is built without forking
+     * @return {@code KdTree} containing every distinct point in {@code points}
+     */
+    public static KdTree build(Point2D[] points, ForkJoinPool pool, int cutoff) {
+        // Throw an exception if the pool is null or the cutoff is not positive
+        if (pool == null)
+            throw new IllegalArgumentException("Null pool argument to build()");
+        if (cutoff < 1)
+            throw new IllegalArgumentException("Cutoff to build() must be positive");
+
+        // Sort inside the pool so the parallel sort uses its threads as well
+        KdTree tree = new KdTree();
+        Point2D[] a = pool.submit(() -> distinct(points, true)).join();
+        tree.root = pool.invoke(tree.new BuildTask(a, 0, a.length, Orientation.VERTICAL, cutoff));
+        tree.size = a.length;
+        return tree;
+    }
+
+    /**
+     * Task that builds a balanced subtree out of {@code a[lo..hi)}, forking the two children
+     * while the subtree has more than {@code cutoff} points.
+     */
+    private class BuildTask extends RecursiveTask<Node> {
+        private static final long serialVersionUID = 1L; // tasks are never serialized
+
+        private final Point2D[] a; // distinct points, reordered in place
+        private final int lo; // first index of the points in the subtree
+        private final int hi; // one past the last index of the points in the subtree
+        private final Orientation bar; // orientation of the subtree's root
+        private final int cutoff; // largest subtree that is built sequentially
+
+        /**
+         * Initialize a BuildTask.
+         *
+         * @param a      {@code Point2D[]} distinct points
+         * @param lo     first index of the points in the subtree
+         * @param hi     one past the last index of the points in the subtree
+         * @param bar    {@code Orientation} of the subtree's root
+         * @param cutoff largest subtree that is built sequentially
+         */
+        BuildTask(Point2D[] a, int lo, int hi, Orientation bar, int cutoff) {
+            this.a = a;
+            this.lo = lo;
+            this.hi = hi;
+            this.bar = bar;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected Node compute() {
+            // Small subtrees are cheaper to build than to fork
+            if (hi - lo <= cutoff)
+                return buildSubtree(a, lo, hi, bar);
+
+            // Split exactly like buildSubtree() and build both halves at the same time
+            int mid = split(a, lo, hi, bar);
+            Node node = new Node(a[mid], bar);
+            Orientation next = (bar == Orientation.VERTICAL) ? Orientation.HORIZONTAL
+                                                             : Orientation.VERTICAL;
+            BuildTask left = new BuildTask(a, lo, mid, next, cutoff);
+            BuildTask right = new BuildTask(a, mid + 1, hi, next, cutoff);
+            left.fork();
+            node.setRight(right.compute());
+            node.setLeft(left.join());
+            node.setCount(hi - lo);
+            return node;
+        }
+    }
+
+    /**
+     * Helper function to copy the points given to {@code build()} without duplicates.
+     *
+     * @param points   {@code Point2D[]} points given by the user
+     * @param parallel {@code true} to sort with {@code Arrays.parallelSort()}
+     * @return sorted copy of {@code points} where every point appears once
+     */
+    private static Point2D[] distinct(Point2D[] points, boolean parallel) {
+        // Throw an exception if the points or any of the points are null
+        if (points == null)
+            throw new IllegalArgumentException("Null argument to build()");
+        for (Point2D p : points) {
+            if (p == null)
+                throw new IllegalArgumentException("Null point in argument to build()");
+        }
+
+        // Sort a copy so equal points end up next to each other and keep the first of each
+        Point2D[] a = points.clone();
+        if (parallel)
+            Arrays.parallelSort(a);
+        else
+            Arrays.sort(a);
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (n == 0 || !a[n - 1].equals(a[i]))
+                a[n++] = a[i];
+        }
+        return Arrays.copyOf(a, n);
+    }
+
+    /**
+     * Helper function to build a balanced subtree out of {@code a[lo..hi)}.
+     *
+     * @param a   {@code Point2D[]} distinct points, reordered in place
+     * @param lo  first index of the points in the subtree
+     * @param hi  one past the last index of the points in the subtree
+     * @param bar {@code Orientation} of the subtree's root
+     * @return root {@code Node} of the subtree, or {@code null} if there are no points
+     */
+    private Node buildSubtree(Point2D[] a, int lo, int hi, Orientation bar) {
+        // No points left for this subtree
+        if (lo >= hi)
+            return null;
+
+        // The median becomes the node, greater points go left and the rest go right
+        int mid = split(a, lo, hi, bar);
+        Node node = new Node(a[mid], bar);
+        Orientation next = (bar == Orientation.VERTICAL) ? Orientation.HORIZONTAL
+                                                         : Orientation.VERTICAL;
+        node.setLeft(buildSubtree(a, lo, mid, next));
+        node.setRight(buildSubtree(a, mid + 1, hi, next));
+        node.setCount(hi - lo);
+        return node;
+    }
+
+    /**
+     * Helper function to partition {@code a[lo..hi)} around its median using quickselect. Points
+     * with a greater coordinate than the median end up before it and points with a smaller or
+     * equal coordinate end up after it, which is the same rule {@code insert()} follows.
+     *
+     * @param a   {@code Point2D[]} points to partition
+     * @param lo  first index of the range
+     * @param hi  one past the last index of the range
+     * @param bar {@code Orientation} deciding which coordinate to compare
+     * @return index of the median point
+     */
+    private static int split(Point2D[] a, int lo, int hi, Orientation bar) {
+        return split(a, null, lo, hi, bar);
+    }
+
+    /**
+     * Helper function to partition {@code a[lo..hi)} like {@code split(a, lo, hi, bar)}, moving
+     * {@code nodes[i]} along with {@code a[i]}.
+     *
+     * @param a     {@code Point2D[]} points to partition
+     * @param nodes {@code Node[]} nodes of the points, or {@code null} if there are none
+     * @param lo    first index of the range
+     * @param hi    one past the last index of the range
+     * @param bar   {@code Orientation} deciding which coordinate to compare
+     * @return index of the median point
+     */
+    private static int split(Point2D[] a, Node[] nodes, int lo, int hi, Orientation bar) {
+        int k = lo + (hi - lo) / 2;
+        hi -= 1;
+        while (lo < hi) {
+            // 3-way partition into greater, equal and smaller coordinates than the pivot
+            double pivot = coordinate(a[lo + (hi - lo) / 2], bar);
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                double c = coordinate(a[i], bar);
+                if (c > pivot)
+                    swap(a, nodes, lt++, i++);
+                else if (c < pivot)
+                    swap(a, nodes, i, gt--);
+                else
+                    i++;
+            }
+            // Keep searching the side holding the median, or stop once it is in the equal band
+            if (k < lt)
+                hi = lt - 1;
+            else if (k > gt)
+                lo = gt + 1;
+            else
+                return lt;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the coordinate of {@code p} that a node with {@code bar} splits on.
+     *
+     * @param p   {@code Point2D}
+     * @param bar {@code Orientation}
+     * @return x coordinate for a vertical bar; y coordinate for a horizontal bar
+     */
+    private static double coordinate(Point2D p, Orientation bar) {
+        return (bar == Orientation.VERTICAL) ? p.x() : p.y();
+    }
+
+    /**
+     * Swaps {@code a[i]} and {@code a[j]}, and {@code nodes[i]} and {@code nodes[j]}.
+     *
+     * @param a     {@code Point2D[]}
+     * @param nodes {@code Node[]}, or {@code null} if there are no nodes to swap
+     * @param i     index of the first point
+     * @param j     index of the second point
+     */
+    private static void swap(Point2D[] a, Node[] nodes, int i, int j) {
+        Point2D temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+        if (nodes != null) {
+            Node node = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = node;
+        }
+    }
+
     /**
      * Check to see if the kdtree is empty.
      *
@@ -134,6 +440,111 @@ public class KdTree {
         return size;
     }
 
+    /**
+     * Sets how much of a subtree may consist of removed nodes before {@code remove()} rebuilds
+     * it. A removed point stays in the tree as a marked node until its subtree is rebuilt, so a
+     * lower threshold keeps the tree smaller at the cost of more frequent, smaller rebuilds.
+     * Only subtrees of at most 4096 nodes are rebuilt, so removed nodes above that size stay
+     * marked until the tree is built again.
+     *
+     * @param threshold share of removed nodes, greater than 0 and at most 1
+     */
+    public void setRebuildThreshold(double threshold) {
+        // Throw an exception if the threshold is out of range
+        if (!(threshold > 0 && threshold <= 1))
+            throw new IllegalArgumentException("Rebuild threshold must be in (0, 1]");
+        this.rebuildThreshold = threshold;
+    }
+
+    /**
+     * Turns on rebalancing in {@code insert()}. Once a child holds more than {@code alpha} of its
+     * parent's nodes, the highest such parent on the insertion path is rebuilt as a balanced
+     * subtree, which keeps the height of the tree logarithmic even when points arrive in sorted
+     * order: after inserts alone it is at most log base 1/alpha of the size, plus one. Values
+     * around 0.7 work well; 1 turns rebalancing off, which is the default.
+     *
+     * @param alpha largest share of a subtree one child may hold, at least 0.5 and at most 1
+     */
+    public void setAlpha(double alpha) {
+        // Throw an exception if alpha is out of range
+        if (!(alpha >= 0.5 && alpha <= 1))
+            throw new IllegalArgumentException("Alpha must be in [0.5, 1]");
+        this.alpha = alpha;
+    }
+
+    /**
+     * Counts what every later search does in {@code stats}, or stops counting if {@code stats}
+     * is {@code null}. While counting is off each search only checks the field for {@code null},
+     * so it can be left off in production and switched on for a slow query.
+     *
+     * @param stats {@code QueryStats} to count into, or {@code null}
+     */
+    public void setStats(QueryStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Puts {@code cache} in front of {@code nearest()}, or takes the cache away if it is
+     * {@code null}. Any answers the cache already holds are dropped, since they may belong to
+     * another tree.
+     *
+     * @param cache {@code NearestCache} to answer repeated queries from, or {@code null}
+     */
+    public void setCache(NearestCache cache) {
+        if (cache != null)
+            cache.clear();
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache in front of {@code nearest()}.
+     *
+     * @return {@code NearestCache} set by {@code setCache()}, or {@code null} if there is none
+     */
+    public NearestCache cache() {
+        return cache;
+    }
+
+    /**
+     * Returns the counters searches are recorded in.
+     *
+     * @return {@code QueryStats} given to {@code setStats()}, or {@code null} if counting is off
+     */
+    public QueryStats stats() {
+        return stats;
+    }
+
+    /**
+     * Counts {@code child} as pruned if searches are being counted and there is a subtree there.
+     *
+     * @param child {@code Node} root of the subtree a search skipped
+     */
+    private void prune(Node child) {
+        if (stats != null && child != null)
+            stats.prune();
+    }
+
+    /**
+     * Returns the height of the tree, counting the nodes on the longest path from the root.
+     *
+     * @return height of the tree; {@code 0} if the tree is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Helper function to find the height of the subtree rooted at {@code node}.
+     *
+     * @param node {@code Node}
+     * @return height of the subtree
+     */
+    private int height(Node node) {
+        if (node == null)
+            return 0;
+        return 1 + Math.max(height(node.left()), height(node.right()));
+    }
+
     /**
      * Inserts the Point2D {@code p} into the kdtree as a Node if the kdtree does not already
      * contain that point.
@@ -144,6 +555,8 @@ public class KdTree {
         // Throw an exception if the point is null
         if (p == null)
             throw new IllegalArgumentException("Null argument to insert()");
+        if (cache != null)
+            cache.inserted(p);
 
         // Make the point a root node if there are no other points in the tree
         if (root == null) {
@@ -152,55 +565,94 @@ public class KdTree {
             return;
         }
 
-        // If the point is not already in the tree
-        if (!contains(p)) {
-            size += 1;
-            Node traverse = root;
-            // Find where to insert the point
-            while (traverse != null) {
-                // If the current traversed node is horizontal
-                if (traverse.bar() == Orientation.HORIZONTAL) {
-                    // If the y coordinate of the new point is greater
-                    if (traverse.point().y() < p.y()) {
-                        // Insert the point on the left side of this node unless theres more nodes to traverse
-                        if (traverse.left() == null) {
-                            traverse.setLeft(new Node(p, Orientation.VERTICAL));
-                            return;
-                        }
-                        traverse = traverse.left();
-                    }
-                    // If the y coordinate of the new point is smaller or equal to
-                    else {
-                        // Insert the point on the right side of this node unless theres more nodes to traverse
-                        if (traverse.right() == null) {
-                            traverse.setRight(new Node(p, Orientation.VERTICAL));
-                            return;
-                        }
-                        traverse = traverse.right();
-                    }
-                }
-                // If the current traversed node is vertical
-                if (traverse.bar() == Orientation.VERTICAL) {
-                    // If the x coordinate of the new point is greater
-                    if (traverse.point().x() < p.x()) {
-                        // Insert the point on the left side of this node unless theres more nodes to traverse
-                        if (traverse.left() == null) {
-                            traverse.setLeft(new Node(p, Orientation.HORIZONTAL));
-                            return;
-                        }
-                        traverse = traverse.left();
-                    }
-                    // If the x coordinate of the new point is smaller or equal to
-                    else {
-                        // Insert the point on the right side of this node unless theres more nodes to traverse
-                        if (traverse.right() == null) {
-                            traverse.setRight(new Node(p, Orientation.HORIZONTAL));
-                            return;
-                        }
-                        traverse = traverse.right();
-                    }
-                }
+        // Bring a removed point back instead of adding a second node for it
+        Node found = find(p);
+        if (found != null) {
+            if (found.isDeleted())
+                revive(p);
+            return;
+        }
+
+        // Otherwise add a new node for it
+        size += 1;
+        Node scapegoat = null; // highest node the new point throws out of balance
+        Node scapegoatParent = null; // parent of the scapegoat
+        Node parent = null;
+        Node traverse = root;
+        // Find where to insert the point
+        while (true) {
+            // The new point ends up somewhere below this node
+            traverse.setCount(traverse.count() + 1);
+            Orientation bar = traverse.bar();
+            // Greater coordinates go on the left side, smaller or equal ones on the right side
+            boolean greater = coordinate(traverse.point(), bar) < coordinate(p, bar);
+            Node child = greater ? traverse.left() : traverse.right();
+            Node other = greater ? traverse.right() : traverse.left();
+
+            // Remember the highest node where one side gets more than alpha of the nodes
+            if (scapegoat == null
+                    && Math.max(weight(child) + 1, weight(other)) > alpha * weight(traverse)) {
+                scapegoat = traverse;
+                scapegoatParent = parent;
+            }
+
+            // Insert the point on this side of the node unless theres more nodes to traverse
+            if (child == null) {
+                Node node = new Node(p, (bar == Orientation.VERTICAL) ? Orientation.HORIZONTAL
+                                                                      : Orientation.VERTICAL);
+                if (greater)
+                    traverse.setLeft(node);
+                else
+                    traverse.setRight(node);
+                break;
             }
+            parent = traverse;
+            traverse = child;
+        }
+
+        // Rebuild the subtree that is out of balance
+        if (scapegoat != null)
+            rebalance(scapegoatParent, scapegoat);
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at {@code node}, removed or not.
+     *
+     * @param node {@code Node}
+     * @return number of nodes in the subtree; {@code 0} if {@code node} is {@code null}
+     */
+    private static int weight(Node node) {
+        if (node == null)
+            return 0;
+        return node.count() + node.tombstones();
+    }
+
+    /**
+     * Helper function to replace the subtree rooted at {@code node} with a balanced subtree of
+     * its remaining points. The removed nodes it drops are taken off the counts of the nodes
+     * above it.
+     *
+     * @param parent {@code Node} parent of {@code node}, or {@code null} if it is the root
+     * @param node   {@code Node} root of the subtree to rebuild
+     */
+    private void rebalance(Node parent, Node node) {
+        int dropped = node.tombstones();
+        Node rebuilt = rebuild(node, null);
+        if (parent == null) {
+            root = rebuilt;
+            return;
+        }
+        if (parent.left() == node)
+            parent.setLeft(rebuilt);
+        else
+            parent.setRight(rebuilt);
+
+        // Walk down to the subtree again, fixing the tombstones of every node on the way
+        Point2D p = node.point();
+        for (Node traverse = root; traverse != rebuilt; ) {
+            traverse.setTombstones(traverse.tombstones() - dropped);
+            traverse = (coordinate(traverse.point(), traverse.bar())
+                    < coordinate(p, traverse.bar())) ? traverse.left() : traverse.right();
         }
     }
 
@@ -215,6 +667,18 @@ public class KdTree {
         if (p == null)
             throw new IllegalArgumentException("Null argument to contains()");
 
+        // Point is either found or not, and removed points do not count
+        Node node = find(p);
+        return (node != null && !node.isDeleted());
+    }
+
+    /**
+     * Helper function to find the node holding the point given, removed or not.
+     *
+     * @param p {@code Point2D} point to look for
+     * @return {@code Node} holding {@code p}, or {@code null} if there is none
+     */
+    private Node find(Point2D p) {
         Node traverse = root;
         // Traverse the tree searching for the node
         while (traverse != null && !traverse.point().equals(p)) {
@@ -238,8 +702,222 @@ public class KdTree {
                     traverse = traverse.right();
             }
         }
-        // Point is either found or not
-        return (traverse != null);
+        return traverse;
+    }
+
+    /**
+     * Helper function to unmark the removed node holding {@code p} and update the counts of the
+     * nodes above it.
+     *
+     * @param p {@code Point2D} removed point that is being inserted again
+     */
+    private void revive(Point2D p) {
+        size += 1;
+        Node traverse = root;
+        while (true) {
+            traverse.setCount(traverse.count() + 1);
+            traverse.setTombstones(traverse.tombstones() - 1);
+            if (traverse.point().equals(p)) {
+                traverse.setDeleted(false);
+                return;
+            }
+            traverse = (coordinate(traverse.point(), traverse.bar())
+                    < coordinate(p, traverse.bar())) ? traverse.left() : traverse.right();
+        }
+    }
+
+    /**
+     * Removes the Point2D {@code p} from the kdtree if the kdtree contains it. The node is only
+     * marked as removed, and once removed nodes make up more than the rebuild threshold of a
+     * subtree of at most 4096 nodes, the highest such subtree on the path to {@code p} is
+     * rebuilt from its remaining points. Larger subtrees are never rebuilt here, so no single
+     * call does more than one small rebuild; in a balanced tree the removed nodes they keep are
+     * the few near the root, about one for every 2048 points.
+     *
+     * @param p {@code Point2D}
+     */
+    public void remove(Point2D p) {
+        // Throw an exception if the point is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to remove()");
+
+        // Nothing to do if the point is not in the tree
+        if (!contains(p))
+            return;
+
+        if (cache != null)
+            cache.removed(p);
+        size -= 1;
+        // Drop the removed nodes left above the rebuilt subtrees once no point is left
+        root = (size == 0) ? null : remove(root, p);
+    }
+
+    /**
+     * Helper function to remove {@code p} from the subtree rooted at {@code node}.
+     *
+     * @param node {@code Node} on the path to {@code p}
+     * @param p    {@code Point2D} point in the subtree that has not been removed yet
+     * @return root of the subtree after the removal
+     */
+    private Node remove(Node node, Point2D p) {
+        // Rebuild the subtree without p if it is small enough and would have too many removed
+        // nodes
+        int weight = weight(node);
+        if (weight <= REBUILD_LIMIT && node.tombstones() + 1 > rebuildThreshold * weight)
+            return rebuild(node, p);
+
+        if (node.point().equals(p))
+            node.setDeleted(true);
+        else if (coordinate(node.point(), node.bar()) < coordinate(p, node.bar()))
+            node.setLeft(remove(node.left(), p));
+        else
+            node.setRight(remove(node.right(), p));
+
+        // Recount from the children since a rebuild below may have dropped removed nodes
+        updateCounts(node);
+        return node;
+    }
+
+    /**
+     * Helper function to recompute {@code count} and {@code tombstones} of {@code node} from its
+     * children.
+     *
+     * @param node {@code Node}
+     */
+    private static void updateCounts(Node node) {
+        int count = node.isDeleted() ? 0 : 1;
+        int tombstones = node.isDeleted() ? 1 : 0;
+        if (node.left() != null) {
+            count += node.left().count();
+            tombstones += node.left().tombstones();
+        }
+        if (node.right() != null) {
+            count += node.right().count();
+            tombstones += node.right().tombstones();
+        }
+        node.setCount(count);
+        node.setTombstones(tombstones);
+    }
+
+    /**
+     * Helper function to rebuild the subtree rooted at {@code node} as a balanced subtree of its
+     * remaining points.
+     *
+     * @param node   {@code Node} root of the subtree
+     * @param except {@code Point2D} point to leave out, or {@code null} to keep every point
+     * @return root of the rebuilt subtree, or {@code null} if no points are left
+     */
+    private Node rebuild(Node node, Point2D except) {
+        Stack<Point2D> points = new Stack<Point2D>();
+        collect(node, except, points);
+        Point2D[] a = new Point2D[points.size()];
+        int i = 0;
+        for (Point2D point : points)
+            a[i++] = point;
+        return buildSubtree(a, 0, a.length, node.bar());
+    }
+
+    /**
+     * Helper function to gather the points of a subtree that have not been removed.
+     *
+     * @param node   {@code Node} root of the subtree
+     * @param except {@code Point2D} point to leave out, or {@code null} to keep every point
+     * @param points {@code Stack<Point2D>} that receives the points
+     */
+    private void collect(Node node, Point2D except, Stack<Point2D> points) {
+        if (node == null)
+            return;
+        if (!node.isDeleted() && !node.point().equals(except))
+            points.push(node.point());
+        collect(node.left(), except, points);
+        collect(node.right(), except, points);
+    }
+
+    /**
+     * Writes the points of the kdtree to {@code filename} as a snapshot that
+     * {@code MappedKdTree} can open without parsing or inserting them again.
+     *
+     * @param filename name of the file to write; an existing file is replaced
+     */
+    public void save(String filename) {
+        // Throw an exception if the file name is null
+        if (filename == null)
+            throw new IllegalArgumentException("Null argument to save()");
+
+        Stack<Point2D> points = new Stack<Point2D>();
+        collect(root, null, points);
+        double[] x = new double[points.size()];
+        double[] y = new double[points.size()];
+        int i = 0;
+        for (Point2D point : points) {
+            x[i] = point.x();
+            y[i] = point.y();
+            i++;
+        }
+        new FlatKdTree(x, y).save(filename);
+    }
+
+    /**
+     * Rebuilds the kdtree as a balanced tree whose nodes are allocated, each right next to its
+     * own copy of its point, in the order of {@code curve}. Points that are close in the plane
+     * then sit close together in memory instead of in the order they were inserted, so range()
+     * and nearest() touch fewer cache lines. Removed nodes are dropped along the way.
+     *
+     * @param curve {@code SpaceFillingCurve} giving the order of the nodes in memory
+     */
+    public void compact(SpaceFillingCurve curve) {
+        // Throw an exception if the curve is null
+        if (curve == null)
+            throw new IllegalArgumentException("Null argument to compact()");
+
+        Stack<Point2D> points = new Stack<Point2D>();
+        collect(root, null, points);
+        double[] x = new double[points.size()];
+        double[] y = new double[points.size()];
+        int i = 0;
+        for (Point2D point : points) {
+            x[i] = point.x();
+            y[i] = point.y();
+            i++;
+        }
+
+        // Allocate in curve order, then link the nodes into the same shape build() gives
+        int[] order = curve.order(x, y);
+        Point2D[] a = new Point2D[order.length];
+        Node[] nodes = new Node[order.length];
+        for (i = 0; i < order.length; i++) {
+            a[i] = new Point2D(x[order[i]], y[order[i]]);
+            nodes[i] = new Node(a[i], Orientation.VERTICAL);
+        }
+        root = link(a, nodes, 0, a.length, Orientation.VERTICAL);
+        size = a.length;
+    }
+
+    /**
+     * Helper function to link {@code nodes[lo..hi)} into a balanced subtree, splitting on the
+     * median exactly like {@code buildSubtree()}.
+     *
+     * @param a     {@code Point2D[]} points of the nodes, reordered in place
+     * @param nodes {@code Node[]} nodes holding {@code a[i]}, reordered along with {@code a}
+     * @param lo    first index of the nodes in the subtree
+     * @param hi    one past the last index of the nodes in the subtree
+     * @param bar   {@code Orientation} of the subtree's root
+     * @return root {@code Node} of the subtree, or {@code null} if there are no nodes
+     */
+    private Node link(Point2D[] a, Node[] nodes, int lo, int hi, Orientation bar) {
+        // No nodes left for this subtree
+        if (lo >= hi)
+            return null;
+
+        int mid = split(a, nodes, lo, hi, bar);
+        Node node = nodes[mid];
+        node.setBar(bar);
+        Orientation next = (bar == Orientation.VERTICAL) ? Orientation.HORIZONTAL
+                                                         : Orientation.VERTICAL;
+        node.setLeft(link(a, nodes, lo, mid, next));
+        node.setRight(link(a, nodes, mid + 1, hi, next));
+        node.setCount(hi - lo);
+        return node;
     }
 
     /**
@@ -263,10 +941,12 @@ public class KdTree {
         if (node == null)
             return;
 
-        // Draw the current point
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.setPenRadius(0.01);
-        node.point().draw();
+        // Draw the current point unless it has been removed
+        if (!node.isDeleted()) {
+            StdDraw.setPenColor(StdDraw.BLACK);
+            StdDraw.setPenRadius(0.01);
+            node.point().draw();
+        }
 
         // To draw a horizontal line
         if (node.bar() == Orientation.HORIZONTAL) {
@@ -280,153 +960,909 @@ public class KdTree {
         }
         // To draw a vertical line
         else {
-            StdDraw.setPenColor(StdDraw.RED);
-            StdDraw.setPenRadius();
-            StdDraw.line(node.point().x(), ymin, node.point().x(), ymax);
-            // Draw the right Node
-            preorder(node.right(), xmin, ymin, node.point().x(), ymax);
-            // Draw the left Node
-            preorder(node.left(), node.point().x(), ymin, xmax, ymax);
+            StdDraw.setPenColor(StdDraw.RED);
+            StdDraw.setPenRadius();
+            StdDraw.line(node.point().x(), ymin, node.point().x(), ymax);
+            // Draw the right Node
+            preorder(node.right(), xmin, ymin, node.point().x(), ymax);
+            // Draw the left Node
+            preorder(node.left(), node.point().x(), ymin, xmax, ymax);
+        }
+    }
+
+    /**
+     * Finds all the points inside of given rectangle.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        // Add all of the points inside of rect
+        range(rect, inside::push);
+        return inside;
+    }
+
+    /**
+     * Passes every point inside of the given rectangle to {@code consumer}. Unlike {@code
+     * range(rect)} this does not allocate anything, so the caller decides what to keep.
+     *
+     * @param rect     {@code RectHV} indicating the region to search
+     * @param consumer {@code PointConsumer} that receives the points inside of {@code rect}
+     */
+    public void range(RectHV rect, PointConsumer consumer) {
+        // Throw an exception if the rectangle or the consumer is null
+        if (rect == null || consumer == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        if (stats != null)
+            stats.begin();
+        searchForPoints(consumer, this.root, 0, 0, 0, 1, 1, rect);
+        if (stats != null)
+            stats.end();
+    }
+
+    /**
+     * Finds the points inside of given rectangle lazily. The kdtree is only searched as far as
+     * the caller iterates, so stopping after the first few points never visits the rest of the
+     * tree. The kdtree must not be changed while an iteration is in progress. Lazy searches are
+     * not counted by {@code setStats()}, since they have no clear end.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}, found as they are iterated
+     */
+    public Iterable<Point2D> rangeLazy(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to rangeLazy()");
+
+        return () -> new RangeIterator(rect, null);
+    }
+
+    /**
+     * Finds at most {@code limit} of the points inside of given rectangle, stopping the search as
+     * soon as it has them.
+     *
+     * @param rect  {@code RectHV} indicating the region to search
+     * @param limit largest number of points to return
+     * @return up to {@code limit} points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect, int limit) {
+        // Throw an exception if the rectangle is null or the limit is negative
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+        if (limit < 0)
+            throw new IllegalArgumentException("Negative limit given to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        if (stats != null)
+            stats.begin();
+        Iterator<Point2D> points = new RangeIterator(rect, stats);
+        while (inside.size() < limit && points.hasNext())
+            inside.push(points.next());
+        if (stats != null) {
+            stats.result(inside.size());
+            stats.end();
+        }
+        return inside;
+    }
+
+    /**
+     * Check if any point of the kdtree lies inside of given rectangle. The search stops at the
+     * first point found.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return {@code true} if a point is inside of {@code rect}; {@code false} otherwise
+     */
+    public boolean rangeAny(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to rangeAny()");
+
+        if (stats != null)
+            stats.begin();
+        boolean any = new RangeIterator(rect, stats).hasNext();
+        if (stats != null) {
+            stats.result(any ? 1 : 0);
+            stats.end();
+        }
+        return any;
+    }
+
+    /**
+     * Iterator over the points inside of a rectangle. It searches the kdtree in the same order as
+     * {@code searchForPoints()}, but keeps the subtrees still to search on an explicit stack and
+     * only moves on when the next point is asked for.
+     */
+    private class RangeIterator implements Iterator<Point2D> {
+        private final RectHV query; // range indicated by the user
+        private final QueryStats counter; // counters for this search, or null
+        private Node[] nodes = new Node[32]; // roots of the subtrees still to search
+        private int[] depths = new int[32]; // depth of each of those roots
+        private double[] boxes = new double[4 * 32]; // xmin, ymin, xmax, ymax of each subtree
+        private int n; // number of subtrees on the stack
+        private Point2D next; // point found but not returned yet, or null
+
+        /**
+         * Initialize a RangeIterator.
+         *
+         * @param query   {@code RectHV} range indicated by the user
+         * @param counter {@code QueryStats} to count the search in, or {@code null}
+         */
+        RangeIterator(RectHV query, QueryStats counter) {
+            this.query = query;
+            this.counter = counter;
+            push(root, 0, 0, 0, 1, 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = advance();
+            return next != null;
+        }
+
+        @Override
+        public Point2D next() {
+            if (!hasNext())
+                throw new NoSuchElementException("No more points inside of the rectangle");
+            Point2D point = next;
+            next = null;
+            return point;
+        }
+
+        /**
+         * Pushes a subtree if its box reaches the query; otherwise counts it as pruned.
+         *
+         * @param node  {@code Node} root of the subtree
+         * @param depth depth of {@code node}
+         * @param xmin  min x coordinate of the box containing {@code node}
+         * @param ymin  min y coordinate of the box containing {@code node}
+         * @param xmax  max x coordinate of the box containing {@code node}
+         * @param ymax  max y coordinate of the box containing {@code node}
+         */
+        private void push(Node node, int depth, double xmin, double ymin, double xmax,
+                          double ymax) {
+            if (node == null)
+                return;
+            if (!intersects(query, xmin, ymin, xmax, ymax)) {
+                if (counter != null)
+                    counter.prune();
+                return;
+            }
+            if (n == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * n);
+                depths = Arrays.copyOf(depths, 2 * n);
+                boxes = Arrays.copyOf(boxes, 8 * n);
+            }
+            nodes[n] = node;
+            depths[n] = depth;
+            boxes[4 * n] = xmin;
+            boxes[4 * n + 1] = ymin;
+            boxes[4 * n + 2] = xmax;
+            boxes[4 * n + 3] = ymax;
+            n++;
+        }
+
+        /**
+         * Searches until the next point inside of the query turns up.
+         *
+         * @return the next point inside of the query, or {@code null} once there are none left
+         */
+        private Point2D advance() {
+            while (n > 0) {
+                n--;
+                Node node = nodes[n];
+                nodes[n] = null;
+                int depth = depths[n];
+                double xmin = boxes[4 * n];
+                double ymin = boxes[4 * n + 1];
+                double xmax = boxes[4 * n + 2];
+                double ymax = boxes[4 * n + 3];
+                if (counter != null)
+                    counter.visit(depth);
+
+                // Push the child searched second first, so the other one is popped next
+                Point2D point = node.point();
+                if (node.bar() == Orientation.HORIZONTAL) {
+                    push(node.right(), depth + 1, xmin, ymin, xmax, point.y());
+                    push(node.left(), depth + 1, xmin, point.y(), xmax, ymax);
+                }
+                else {
+                    push(node.left(), depth + 1, point.x(), ymin, xmax, ymax);
+                    push(node.right(), depth + 1, xmin, ymin, point.x(), ymax);
+                }
+                if (!node.isDeleted() && query.contains(point))
+                    return point;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Helper function to traverse the kdtree for points inside of the {@code query}. The bounding
+     * box that contains {@code node} is carried as four coordinates instead of a {@code RectHV}
+     * so the search does not allocate.
+     *
+     * @param consumer {@code PointConsumer} that receives all points inside the {@code query}
+     * @param node     {@code Node}
+     * @param depth    depth of {@code node}; the root is at depth 0
+     * @param xmin     min x coordinate of the box containing {@code node}
+     * @param ymin     min y coordinate of the box containing {@code node}
+     * @param xmax     max x coordinate of the box containing {@code node}
+     * @param ymax     max y coordinate of the box containing {@code node}
+     * @param query    {@code RectHV} range indicated by the user
+     */
+    public void searchForPoints(PointConsumer consumer, Node node, int depth, double xmin,
+                                double ymin, double xmax, double ymax, RectHV query) {
+        // No more nodes to check
+        if (node == null)
+            return;
+        if (stats != null)
+            stats.visit(depth);
+
+        // Check if the current point is inside the rectangle
+        Point2D point = node.point();
+        if (!node.isDeleted() && query.contains(point)) {
+            // Add it if it is
+            consumer.accept(point);
+            if (stats != null)
+                stats.result(1);
+        }
+
+        // If the bar is horizontal
+        if (node.bar() == Orientation.HORIZONTAL) {
+            double y = point.y();
+            // Search the left node if its box (above the bar) intersects with the query
+            if (intersects(query, xmin, y, xmax, ymax))
+                searchForPoints(consumer, node.left(), depth + 1, xmin, y, xmax, ymax, query);
+            else
+                prune(node.left());
+            // Search the right node if its box (below the bar) intersects with the query
+            if (intersects(query, xmin, ymin, xmax, y))
+                searchForPoints(consumer, node.right(), depth + 1, xmin, ymin, xmax, y, query);
+            else
+                prune(node.right());
+        }
+        else {
+            double x = point.x();
+            // Search the right node if its box (left of the bar) intersects with the query
+            if (intersects(query, xmin, ymin, x, ymax))
+                searchForPoints(consumer, node.right(), depth + 1, xmin, ymin, x, ymax, query);
+            else
+                prune(node.right());
+            // Search the left node if its box (right of the bar) intersects with the query
+            if (intersects(query, x, ymin, xmax, ymax))
+                searchForPoints(consumer, node.left(), depth + 1, x, ymin, xmax, ymax, query);
+            else
+                prune(node.left());
+        }
+    }
+
+    /**
+     * Counts the points inside of given rectangle without collecting them. Subtrees whose whole
+     * bounding box is inside of {@code rect} add their size at once instead of being searched.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return number of points inside of {@code rect}
+     */
+    public int rangeCount(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to rangeCount()");
+
+        if (stats != null)
+            stats.begin();
+        int count = countPoints(this.root, 0, 0, 0, 1, 1, rect);
+        if (stats != null) {
+            stats.result(count);
+            stats.end();
+        }
+        return count;
+    }
+
+    /**
+     * Helper function to count the points of the subtree rooted at {@code node} that are inside
+     * of the {@code query}.
+     *
+     * @param node  {@code Node}
+     * @param depth depth of {@code node}; the root is at depth 0
+     * @param xmin  min x coordinate of the box containing {@code node}
+     * @param ymin  min y coordinate of the box containing {@code node}
+     * @param xmax  max x coordinate of the box containing {@code node}
+     * @param ymax  max y coordinate of the box containing {@code node}
+     * @param query {@code RectHV} range indicated by the user
+     * @return number of points of the subtree inside of {@code query}
+     */
+    private int countPoints(Node node, int depth, double xmin, double ymin, double xmax,
+                            double ymax, RectHV query) {
+        // No more nodes to check
+        if (node == null)
+            return 0;
+        if (stats != null)
+            stats.visit(depth);
+
+        // Every point of the subtree is inside the query if its whole box is
+        if (query.xmin() <= xmin && xmax <= query.xmax()
+                && query.ymin() <= ymin && ymax <= query.ymax())
+            return node.count();
+
+        // Check if the current point is inside the rectangle
+        Point2D point = node.point();
+        int count = (!node.isDeleted() && query.contains(point)) ? 1 : 0;
+
+        // Count the children whose boxes intersect with the query
+        if (node.bar() == Orientation.HORIZONTAL) {
+            double y = point.y();
+            if (intersects(query, xmin, y, xmax, ymax))
+                count += countPoints(node.left(), depth + 1, xmin, y, xmax, ymax, query);
+            else
+                prune(node.left());
+            if (intersects(query, xmin, ymin, xmax, y))
+                count += countPoints(node.right(), depth + 1, xmin, ymin, xmax, y, query);
+            else
+                prune(node.right());
+        }
+        else {
+            double x = point.x();
+            if (intersects(query, xmin, ymin, x, ymax))
+                count += countPoints(node.right(), depth + 1, xmin, ymin, x, ymax, query);
+            else
+                prune(node.right());
+            if (intersects(query, x, ymin, xmax, ymax))
+                count += countPoints(node.left(), depth + 1, x, ymin, xmax, ymax, query);
+            else
+                prune(node.left());
+        }
+        return count;
+    }
+
+    /**
+     * Check if a box intersects with the query rectangle, the same way {@code
+     * RectHV.intersects()} does.
+     *
+     * @param query {@code RectHV} range indicated by the user
+     * @param xmin  min x coordinate of the box
+     * @param ymin  min y coordinate of the box
+     * @param xmax  max x coordinate of the box
+     * @param ymax  max y coordinate of the box
+     * @return {@code true} if the box and {@code query} intersect; {@code false} otherwise
+     */
+    private static boolean intersects(RectHV query, double xmin, double ymin, double xmax,
+                                      double ymax) {
+        return xmax >= query.xmin() && ymax >= query.ymin()
+                && query.xmax() >= xmin && query.ymax() >= ymin;
+    }
+
+    /**
+     * Returns the squared distance from {@code p} to a box, the same way {@code
+     * RectHV.distanceSquaredTo()} does.
+     *
+     * @param p    {@code Point2D}
+     * @param xmin min x coordinate of the box
+     * @param ymin min y coordinate of the box
+     * @param xmax max x coordinate of the box
+     * @param ymax max y coordinate of the box
+     * @return squared distance from {@code p} to the closest point of the box
+     */
+    private static double distanceSquaredTo(Point2D p, double xmin, double ymin, double xmax,
+                                            double ymax) {
+        double dx = 0.0, dy = 0.0;
+        if (p.x() < xmin)
+            dx = p.x() - xmin;
+        else if (p.x() > xmax)
+            dx = p.x() - xmax;
+        if (p.y() < ymin)
+            dy = p.y() - ymin;
+        else if (p.y() > ymax)
+            dy = p.y() - ymax;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Finds all the points within distance {@code r} of {@code center}.
+     *
+     * @param center {@code Point2D} center of the circle to search
+     * @param r      radius of the circle to search
+     * @return the points whose distance to {@code center} is at most {@code r}
+     */
+    public Iterable<Point2D> radius(Point2D center, double r) {
+        // Throw an exception if the center is null or the radius is negative
+        if (center == null)
+            throw new IllegalArgumentException("Null argument to radius()");
+        if (!(r >= 0))
+            throw new IllegalArgumentException("Radius given to radius() must not be negative");
+
+        if (stats != null)
+            stats.begin();
+        Stack<Point2D> inside = new Stack<Point2D>();
+        searchRadius(inside, this.root, 0, center, r * r, 0, 0, 1, 1);
+        if (stats != null) {
+            stats.result(inside.size());
+            stats.end();
+        }
+        return inside;
+    }
+
+    /**
+     * Helper function to traverse the kdtree for points inside of a circle. Subtrees whose
+     * bounding box is farther from the center than the radius are skipped.
+     *
+     * @param stack  {@code Stack<Point2D>} that contains all points inside the circle
+     * @param node   {@code Node}
+     * @param depth  depth of {@code node}; the root is at depth 0
+     * @param center {@code Point2D} center of the circle
+     * @param r2     squared radius of the circle
+     * @param xmin   min x coordinate of the box containing {@code node}
+     * @param ymin   min y coordinate of the box containing {@code node}
+     * @param xmax   max x coordinate of the box containing {@code node}
+     * @param ymax   max y coordinate of the box containing {@code node}
+     */
+    private void searchRadius(Stack<Point2D> stack, Node node, int depth, Point2D center,
+                              double r2, double xmin, double ymin, double xmax, double ymax) {
+        // No more nodes to check
+        if (node == null)
+            return;
+
+        // Skip the subtree if its box does not reach the circle
+        if (distanceSquaredTo(center, xmin, ymin, xmax, ymax) > r2) {
+            prune(node);
+            return;
+        }
+        if (stats != null)
+            stats.visit(depth);
+
+        // Add the current point if it is inside the circle
+        if (!node.isDeleted() && distance(node.point(), center) <= r2)
+            stack.push(node.point());
+
+        // Greater coordinates are on the left, smaller or equal ones on the right
+        Point2D point = node.point();
+        if (node.bar() == Orientation.HORIZONTAL) {
+            searchRadius(stack, node.left(), depth + 1, center, r2, xmin, point.y(), xmax, ymax);
+            searchRadius(stack, node.right(), depth + 1, center, r2, xmin, ymin, xmax, point.y());
+        }
+        else {
+            searchRadius(stack, node.right(), depth + 1, center, r2, xmin, ymin, point.x(), ymax);
+            searchRadius(stack, node.left(), depth + 1, center, r2, point.x(), ymin, xmax, ymax);
+        }
+    }
+
+    /**
+     * Locates the nearest point in the kdtree to the queried point. With a cache set by
+     * {@code setCache()}, a query in a cell answered before gets the cached answer, which is at
+     * most {@code cache.maxError()} farther from {@code p} than the true nearest point.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in kdtree closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        return nearest(p, null);
+    }
+
+    /**
+     * Locates the nearest point in the kdtree to the queried point, starting from a guess. The
+     * search begins with the distance from {@code p} to {@code hint} as its best distance, so
+     * subtrees farther away than the hint are pruned from the first node on. For a query point
+     * that moves a little between calls, the previous answer is a good hint. The descent towards
+     * {@code p} usually finds a point about as close within a few nodes anyway, and most of the
+     * search goes to ruling out closer points, so the hint saves only a few percent of the nodes
+     * visited. The answer is exact whatever the hint is; a hint that is not in the tree only
+     * makes the search slower.
+     *
+     * @param p    {@code Point2D} queried point
+     * @param hint {@code Point2D} point expected to be close to {@code p}, such as the answer
+     *             for the previous position of a moving query, or {@code null} for none
+     * @return {@code Point2D} point in kdtree closest to {@code p}
+     */
+    public Point2D nearest(Point2D p, Point2D hint) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // No points closest if there are no nodes in the tree
+        if (this.size == 0)
+            return null;
+
+        // Return closest point
+        if (stats == null && cache == null)
+            return searchNearest(p, hint);
+        if (stats != null)
+            stats.begin();
+        // A query in a cell answered before is answered without visiting any node
+        Point2D best = (cache != null) ? cache.get(p) : null;
+        if (best == null) {
+            best = searchNearest(p, hint);
+            if (cache != null)
+                cache.put(p, best);
+        }
+        if (stats != null) {
+            stats.result((best == null) ? 0 : 1);
+            stats.end();
+        }
+        return best;
+    }
+
+    /**
+     * Helper function to search the whole kdtree for the closest point to {@code target},
+     * seeding the best distance with the distance to {@code hint}.
+     *
+     * @param target {@code Point2D} target specified by the user
+     * @param hint   {@code Point2D} point expected to be close to {@code target}, or {@code null}
+     * @return closest point to the {@code target}
+     */
+    private Point2D searchNearest(Point2D target, Point2D hint) {
+        if (hint == null)
+            return searchNearest(root, 0, target, null, Double.POSITIVE_INFINITY, 0, 0, 1, 1);
+
+        // Start just above the hint's distance so the hint itself is found again if nothing is
+        // closer; if nothing is found at all, the hint is not in the tree and a full search is
+        // needed
+        double seed = Math.nextUp(hint.distanceSquaredTo(target));
+        Point2D best = searchNearest(root, 0, target, null, seed, 0, 0, 1, 1);
+        if (best == null)
+            best = searchNearest(root, 0, target, null, Double.POSITIVE_INFINITY, 0, 0, 1, 1);
+        return best;
+    }
+
+    /**
+     * Locates the nearest point in the kdtree to each of the queried points. The queries are
+     * answered in Hilbert curve order rather than the order given, so consecutive searches walk
+     * down mostly the same nodes while they are still in cache.
+     *
+     * @param queries {@code Point2D[]} queried points; the array is not modified
+     * @return the point closest to {@code queries[i]} at index {@code i}
+     */
+    public Point2D[] nearestAll(Point2D[] queries) {
+        // Throw exception if given null
+        if (queries == null)
+            throw new IllegalArgumentException("Null argument to nearestAll()");
+        for (Point2D p : queries) {
+            if (p == null)
+                throw new IllegalArgumentException("Null point in argument to nearestAll()");
+        }
+
+        Point2D[] nearest = new Point2D[queries.length];
+        for (int i : SpaceFillingCurve.HILBERT.order(queries))
+            nearest[i] = nearest(queries[i]);
+        return nearest;
+    }
+
+    /**
+     * Helper function to prune kdtree for closest node. The child on the same side of the bar as
+     * the target is searched first, so {@code bestD} is usually small by the time the other child
+     * is considered. The other child is only searched if the bar itself is closer than {@code
+     * bestD} and then only if its whole box is as well. The bounding box that contains {@code
+     * node} is carried as four coordinates instead of a {@code RectHV} so the search does not
+     * allocate.
+     *
+     * @param node   {@code Node}
+     * @param depth  depth of {@code node}; the root is at depth 0
+     * @param target {@code Point2D} target specified by the user
+     * @param best   {@code Point2D} closest point to the {@code target} thus far, or {@code null}
+     * @param bestD  closest distance to {@code target}
+     * @param xmin   min x coordinate of the box containing {@code node}
+     * @param ymin   min y coordinate of the box containing {@code node}
+     * @param xmax   max x coordinate of the box containing {@code node}
+     * @param ymax   max y coordinate of the box containing {@code node}
+     * @return closest node to the {@code target}
+     */
+    public Point2D searchNearest(Node node, int depth, Point2D target, Point2D best,
+                                 double bestD, double xmin, double ymin, double xmax,
+                                 double ymax) {
+        // No more nodes to search
+        if (node == null)
+            return best;
+        if (stats != null)
+            stats.visit(depth);
+
+        // Update best node if the distance is closer and the point has not been removed
+        Point2D point = node.point();
+        double currD = distance(point, target);
+        if (!node.isDeleted() && currD < bestD) {
+            best = point;
+            bestD = currD;
+        }
+
+        // The left box holds greater coordinates than the bar and the right box the rest
+        boolean horizontal = node.bar() == Orientation.HORIZONTAL;
+        double bar = horizontal ? point.y() : point.x();
+        double gap = (horizontal ? target.y() : target.x()) - bar;
+        double leftXmin = horizontal ? xmin : bar;
+        double leftYmin = horizontal ? bar : ymin;
+        double rightXmax = horizontal ? xmax : bar;
+        double rightYmax = horizontal ? bar : ymax;
+
+        // If the target is in the left box, search left first
+        if (gap > 0) {
+            if (distanceSquaredTo(target, leftXmin, leftYmin, xmax, ymax) < bestD) {
+                best = searchNearest(node.left(), depth + 1, target, best, bestD,
+                                     leftXmin, leftYmin, xmax, ymax);
+                if (best != null)
+                    bestD = best.distanceSquaredTo(target);
+            }
+            else
+                prune(node.left());
+            // Only go right if the bar and then the right box are closer than the best node
+            if (gap * gap < bestD
+                    && distanceSquaredTo(target, xmin, ymin, rightXmax, rightYmax) < bestD)
+                best = searchNearest(node.right(), depth + 1, target, best, bestD,
+                                     xmin, ymin, rightXmax, rightYmax);
+            else
+                prune(node.right());
+        }
+        // Otherwise the target is in the right box, so search right first
+        else {
+            if (distanceSquaredTo(target, xmin, ymin, rightXmax, rightYmax) < bestD) {
+                best = searchNearest(node.right(), depth + 1, target, best, bestD,
+                                     xmin, ymin, rightXmax, rightYmax);
+                if (best != null)
+                    bestD = best.distanceSquaredTo(target);
+            }
+            else
+                prune(node.right());
+            // Only go left if the bar and then the left box are closer than the best node
+            if (gap * gap < bestD
+                    && distanceSquaredTo(target, leftXmin, leftYmin, xmax, ymax) < bestD)
+                best = searchNearest(node.left(), depth + 1, target, best, bestD,
+                                     leftXmin, leftYmin, xmax, ymax);
+            else
+                prune(node.left());
         }
+
+        return best;
     }
 
     /**
-     * Finds all the points inside of given rectangle.
+     * Class definition for the state of an approximate nearest neighbor search.
+     */
+    private static class Approx {
+        private Point2D best; // closest point found so far
+        private double bestD = Double.POSITIVE_INFINITY; // squared distance to best
+        private final double shrink; // boxes at least bestD * shrink away are skipped
+        private int budget; // number of nodes the search may still visit
+
+        /**
+         * Initialize the search state.
+         *
+         * @param epsilon  allowed relative error of the distance found
+         * @param maxNodes number of nodes the search may visit
+         */
+        Approx(double epsilon, int maxNodes) {
+            this.shrink = 1.0 / ((1.0 + epsilon) * (1.0 + epsilon));
+            this.budget = maxNodes;
+        }
+    }
+
+    /**
+     * Locates a point whose distance to the queried point is at most {@code 1 + epsilon} times
+     * the distance of the nearest point. Subtrees that could only hold a point closer by less
+     * than that factor are skipped, which in dense regions is most of the work {@code nearest()}
+     * does to prove its answer. With {@code epsilon} {@code 0} the answer is exact.
      *
-     * @param rect {@code RectHV} indicating the region to search
-     * @return the points inside of {@code rect}
+     * @param p       {@code Point2D} queried point
+     * @param epsilon allowed relative error of the distance, at least {@code 0}
+     * @return {@code Point2D} point in kdtree close to {@code p}, or {@code null} if the tree is
+     * empty
      */
-    public Iterable<Point2D> range(RectHV rect) {
-        // Throw an exception if the rectangle is null
-        if (rect == null)
-            throw new IllegalArgumentException("Null argument to range()");
+    public Point2D nearestApprox(Point2D p, double epsilon) {
+        return nearestApprox(p, epsilon, Integer.MAX_VALUE);
+    }
 
-        Stack<Point2D> inside = new Stack<Point2D>();
-        // Add all of the points inside of rect
-        searchForPoints(inside, this.root, new RectHV(0, 0, 1, 1), rect);
-        return inside;
+    /**
+     * Locates a point close to the queried point, visiting at most {@code maxNodes} nodes. The
+     * search goes towards the target first, so when the budget runs out the answer is the best
+     * point on and around the target's path; if it does not run out, the distance found is at
+     * most {@code 1 + epsilon} times the nearest one.
+     *
+     * @param p        {@code Point2D} queried point
+     * @param epsilon  allowed relative error of the distance, at least {@code 0}
+     * @param maxNodes largest number of nodes to visit, at least {@code 1}
+     * @return {@code Point2D} point in kdtree close to {@code p}, or {@code null} if the tree is
+     * empty or every node visited has been removed
+     */
+    public Point2D nearestApprox(Point2D p, double epsilon, int maxNodes) {
+        // Throw exception if given null, a negative epsilon or no nodes to visit
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearestApprox()");
+        if (!(epsilon >= 0))
+            throw new IllegalArgumentException("Epsilon given to nearestApprox() must not be "
+                                                       + "negative");
+        if (maxNodes < 1)
+            throw new IllegalArgumentException("nearestApprox() must visit at least one node");
+
+        // No points closest if there are no nodes in the tree
+        if (this.size == 0)
+            return null;
+
+        if (stats != null)
+            stats.begin();
+        Approx search = new Approx(epsilon, maxNodes);
+        searchApprox(search, root, 0, p, 0, 0, 1, 1);
+        if (stats != null) {
+            stats.result((search.best == null) ? 0 : 1);
+            stats.end();
+        }
+        return search.best;
     }
 
     /**
-     * Helper function to traverse the kdtree for points inside of the {@code query}.
+     * Helper function to search the subtree rooted at {@code node} for a point closer than the
+     * best one found. The subtree is skipped if its box is not closer than the best distance
+     * shrunk by {@code 1 + epsilon}, or if the node budget has run out.
      *
-     * @param stack {@code Stack<Point2D>} that contains all points inside the {@code query}
-     * @param node  {@code Node}
-     * @param rect  {@code RectHV} bounding box that contains {@code node} generated from previous
-     *              node
-     * @param query {@code RectHV} range indicated by the user
+     * @param search {@code Approx} state of the search
+     * @param node   {@code Node}
+     * @param depth  depth of {@code node}; the root is at depth 0
+     * @param target {@code Point2D} target specified by the user
+     * @param xmin   min x coordinate of the box containing {@code node}
+     * @param ymin   min y coordinate of the box containing {@code node}
+     * @param xmax   max x coordinate of the box containing {@code node}
+     * @param ymax   max y coordinate of the box containing {@code node}
      */
-    public void searchForPoints(Stack<Point2D> stack, Node node, RectHV rect, RectHV query) {
-        // No more nodes to check
-        if (node == null)
+    private void searchApprox(Approx search, Node node, int depth, Point2D target, double xmin,
+                              double ymin, double xmax, double ymax) {
+        // No more nodes to search, or no more nodes allowed
+        if (node == null || search.budget == 0)
             return;
 
-        // Check if the current point is inside the rectangle
-        if (query.contains(node.point()))
-            // Add it if it is
-            stack.push(node.point());
+        // Skip the subtree if it cannot hold a point closer by more than the allowed factor
+        if (distanceSquaredTo(target, xmin, ymin, xmax, ymax) >= search.bestD * search.shrink) {
+            prune(node);
+            return;
+        }
+        search.budget -= 1;
+        if (stats != null)
+            stats.visit(depth);
+
+        // Update best node if the distance is closer and the point has not been removed
+        Point2D point = node.point();
+        double currD = distance(point, target);
+        if (!node.isDeleted() && currD < search.bestD) {
+            search.best = point;
+            search.bestD = currD;
+        }
 
-        // If the bar is horizontal
-        if (node.bar() == Orientation.HORIZONTAL) {
-            RectHV box = new RectHV(rect.xmin(), node.point().y(), rect.xmax(), rect.ymax());
-            // Check to see if the left node's rectangle intersects with the query rectangle
-            if (box.intersects(query))
-                // Search left node if it does
-                searchForPoints(stack, node.left(), box, query);
-            box = new RectHV(rect.xmin(), rect.ymin(), rect.xmax(), node.point().y());
-            // Check to see if the right node's rectangle intersects with the query rectangle
-            if (box.intersects(query))
-                // Search right node if it does
-                searchForPoints(stack, node.right(), box, query);
+        // The left box holds greater coordinates than the bar and the right box the rest
+        boolean horizontal = node.bar() == Orientation.HORIZONTAL;
+        double bar = horizontal ? point.y() : point.x();
+        double leftXmin = horizontal ? xmin : bar;
+        double leftYmin = horizontal ? bar : ymin;
+        double rightXmax = horizontal ? xmax : bar;
+        double rightYmax = horizontal ? bar : ymax;
+
+        // Search the box holding the target first
+        if ((horizontal ? target.y() : target.x()) > bar) {
+            searchApprox(search, node.left(), depth + 1, target, leftXmin, leftYmin, xmax, ymax);
+            searchApprox(search, node.right(), depth + 1, target, xmin, ymin, rightXmax,
+                         rightYmax);
         }
         else {
-            RectHV box = new RectHV(rect.xmin(), rect.ymin(), node.point().x(), rect.ymax());
-            // Check to see if the right node's rectangle intersects with the query rectangle
-            if (box.intersects(query))
-                // Search right node if it does
-                searchForPoints(stack, node.right(), box, query);
-            box = new RectHV(node.point().x(), rect.ymin(), rect.xmax(), rect.ymax());
-            // Check to see if the left node's rectangle intersects with the query rectangle
-            if (box.intersects(query))
-                // Search left node if it does
-                searchForPoints(stack, node.left(), box, query);
+            searchApprox(search, node.right(), depth + 1, target, xmin, ymin, rightXmax,
+                         rightYmax);
+            searchApprox(search, node.left(), depth + 1, target, leftXmin, leftYmin, xmax, ymax);
         }
     }
 
     /**
-     * Locates the nearest point in the kdtree to the queried point.
+     * Locates the {@code k} points in the kdtree nearest to the queried point.
      *
-     * @param p {@code Point2D} queried point
-     * @return {@code Point2D} point in kdtree closest to {@code p}
+     * @param target {@code Point2D} queried point
+     * @param k      number of points to find
+     * @return the {@code k} points closest to {@code target} (or every point if the tree has
+     * fewer), nearest first
      */
-    public Point2D nearest(Point2D p) {
-        // Throw exception if given null
-        if (p == null)
-            throw new IllegalArgumentException("Null argument to nearest()");
-
-        // No points closest if there are no nodes in the tree
-        if (this.size == 0)
-            return null;
+    public Iterable<Point2D> knn(Point2D target, int k) {
+        // Throw exception if given null or a negative k
+        if (target == null)
+            throw new IllegalArgumentException("Null argument to knn()");
+        if (k < 0)
+            throw new IllegalArgumentException("Negative k given to knn()");
+
+        Stack<Point2D> nearest = new Stack<Point2D>();
+        if (k == 0 || this.size == 0)
+            return nearest;
+
+        // Keep the k best points in a max heap so the worst of them is always on top
+        MaxPQ<Point2D> heap = new MaxPQ<Point2D>(Math.min(k, size) + 1,
+                                                 target.distanceToOrder());
+        if (stats != null)
+            stats.begin();
+        searchKnn(root, 0, target, k, heap);
+        if (stats != null) {
+            stats.result(heap.size());
+            stats.end();
+        }
 
-        // Return closest point
-        return searchNearest(root, p, root.point(), Double.POSITIVE_INFINITY,
-                             new RectHV(0, 0, 1, 1));
+        // Pop the farthest points first so the nearest point ends up on top of the stack
+        while (!heap.isEmpty())
+            nearest.push(heap.delMax());
+        return nearest;
     }
 
     /**
-     * Helper function to prune kdtree for closest node.
+     * Helper function to prune kdtree for the {@code k} closest nodes. The side of the node
+     * holding the target is searched first and the other side is skipped once the splitting line
+     * is farther away than the worst of {@code k} points already found.
      *
      * @param node   {@code Node}
+     * @param depth  depth of {@code node}; the root is at depth 0
      * @param target {@code Point2D} target specified by the user
-     * @param best   {@code Point2D} closest point to the {@code target} thus far
-     * @param bestD  closest distance to {@code target}
-     * @param rect   {@code RectHV} bounding box from previous nodes and contains current {@code
-     *               node}
-     * @return closest node to the {@code target}
+     * @param k      number of points to find
+     * @param heap   {@code MaxPQ<Point2D>} closest points to the {@code target} thus far
      */
-    public Point2D searchNearest(Node node, Point2D target, Point2D best, double bestD,
-                                 RectHV rect) {
+    private void searchKnn(Node node, int depth, Point2D target, int k, MaxPQ<Point2D> heap) {
         // No more nodes to search
         if (node == null)
-            return best;
-
-        // Update best node if the distance is closer
-        double currD = node.point().distanceSquaredTo(target);
-        if (currD < bestD) {
-            best = node.point();
-            bestD = currD;
+            return;
+        if (stats != null)
+            stats.visit(depth);
+
+        // Replace the worst point found if this one is closer and has not been removed
+        Point2D point = node.point();
+        if (!node.isDeleted()) {
+            if (heap.size() < k)
+                heap.insert(point);
+            else if (distance(point, target) < heap.max().distanceSquaredTo(target)) {
+                heap.delMax();
+                heap.insert(point);
+            }
         }
 
-        // If the bar is horizontal
-        if (node.bar() == Orientation.HORIZONTAL) {
-            RectHV box = new RectHV(rect.xmin(), node.point().y(), rect.xmax(), rect.ymax());
-            // Check if the left rectangle is closer than the best node
-            if (bestD >= box.distanceSquaredTo(target))
-                // Search that rectangle if it is
-                best = searchNearest(node.left(), target, best, bestD, box);
-            box = new RectHV(rect.xmin(), rect.ymin(), rect.xmax(), node.point().y());
-            // Check if the right rectangle is closer than the best node
-            if (best.distanceSquaredTo(target) >= box.distanceSquaredTo(target))
-                // Search that rectangle if it is
-                best = searchNearest(node.right(), target, best, best.distanceSquaredTo(target),
-                                     box);
-        }
-        // If the bar is vertical
-        else {
-            RectHV box = new RectHV(rect.xmin(), rect.ymin(), node.point().x(), rect.ymax());
-            // Check if the right rectangle is closer than the best node
-            if (bestD >= box.distanceSquaredTo(target))
-                // Search that rectangle if it is
-                best = searchNearest(node.right(), target, best, bestD, box);
-            box = new RectHV(node.point().x(), rect.ymin(), rect.xmax(), rect.ymax());
-            // Check if the left rectangle is closer than the best node
-            if (best.distanceSquaredTo(target) >= box.distanceSquaredTo(target))
-                // Search that rectangle if it is
-                best = searchNearest(node.left(), target, best, best.distanceSquaredTo(target),
-                                     box);
-        }
+        // Greater coordinates are on the left, smaller or equal ones on the right
+        double gap = coordinate(target, node.bar()) - coordinate(point, node.bar());
+        Node near = (gap > 0) ? node.left() : node.right();
+        Node far = (gap > 0) ? node.right() : node.left();
+        searchKnn(near, depth + 1, target, k, heap);
+        if (heap.size() < k || gap * gap < heap.max().distanceSquaredTo(target))
+            searchKnn(far, depth + 1, target, k, heap);
+        else
+            prune(far);
+    }
 
-        return best;
+    /**
+     * Returns the squared distance between {@code p} and {@code target}, counting it if searches
+     * are being counted.
+     *
+     * @param p      {@code Point2D}
+     * @param target {@code Point2D} target specified by the user
+     * @return squared distance between the points
+     */
+    private double distance(Point2D p, Point2D target) {
+        if (stats != null)
+            stats.distance();
+        return p.distanceSquaredTo(target);
+    }
+
+    /**
+     * Helper function to check if two subtrees have the same points in the same places.
+     *
+     * @param a {@code Node} root of the first subtree
+     * @param b {@code Node} root of the second subtree
+     * @return {@code true} if the subtrees are identical; {@code false} otherwise
+     */
+    private static boolean sameShape(Node a, Node b) {
+        if (a == null || b == null)
+            return a == b;
+        return a.point().equals(b.point()) && a.bar() == b.bar()
+                && sameShape(a.left(), b.left()) && sameShape(a.right(), b.right());
+    }
+
+    /**
+     * Returns the number of garbage collections run so far, so a test can tell a pause for a
+     * collection apart from the work of the code it times.
+     *
+     * @return number of collections by every collector
+     */
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += gc.getCollectionCount();
+        return count;
     }
 
     // Test Cases
@@ -438,13 +1874,13 @@ public class KdTree {
         System.out.println("Test 2.1a: size() & isEmpty()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
             int count = 0;
-            while (!in.isEmpty()) {
+            for (int k = 0; k < in.size(); k++) {
                 count += 1;
-                double x = in.readDouble();
-                double y = in.readDouble();
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
                 double check = StdRandom.uniform(0.0, 1.0);
@@ -464,13 +1900,13 @@ public class KdTree {
         System.out.println("Test 2.1b: size() & isEmpty()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
             int count = 0;
-            while (!in.isEmpty()) {
+            for (int k = 0; k < in.size(); k++) {
                 count += 1;
-                double x = in.readDouble();
-                double y = in.readDouble();
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
                 double check = StdRandom.uniform(0.0, 1.0);
@@ -489,13 +1925,13 @@ public class KdTree {
         System.out.println("Test 2.1c: size() & isEmpty()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
             int count = 0;
-            while (!in.isEmpty()) {
+            for (int k = 0; k < in.size(); k++) {
                 count += 1;
-                double x = in.readDouble();
-                double y = in.readDouble();
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
                 double check = StdRandom.uniform(0.0, 1.0);
@@ -514,13 +1950,13 @@ public class KdTree {
         System.out.println("Test 2.1d: size() & isEmpty()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
             int count = 0;
-            while (!in.isEmpty()) {
+            for (int k = 0; k < in.size(); k++) {
                 count += 1;
-                double x = in.readDouble();
-                double y = in.readDouble();
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
                 double check = StdRandom.uniform(0.0, 1.0);
@@ -539,11 +1975,11 @@ public class KdTree {
         System.out.println("Test 2.2a: contains()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -565,11 +2001,11 @@ public class KdTree {
         System.out.println("Test 2.2b: contains()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -591,11 +2027,11 @@ public class KdTree {
         System.out.println("Test 2.2c: contains()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -616,11 +2052,11 @@ public class KdTree {
         System.out.println("Test 2.2d: contains()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -641,11 +2077,11 @@ public class KdTree {
         System.out.println("Test 2.3a: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -672,11 +2108,11 @@ public class KdTree {
         System.out.println("Test 2.3b: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -704,11 +2140,11 @@ public class KdTree {
         System.out.println("Test 2.3c: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -734,11 +2170,11 @@ public class KdTree {
         System.out.println("Test 2.3d: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -764,18 +2200,18 @@ public class KdTree {
         System.out.println("Test 2.3e: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
-            in = new In(string);
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            in = new PointReader(string);
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 RectHV p = new RectHV(x - 0.001, y - 0.001, x + 0.001, y + 0.001);
                 System.out.println("Checking rectangle " + p.toString());
                 Iterable<Point2D> res = tree.range(p);
@@ -792,11 +2228,11 @@ public class KdTree {
         System.out.println("Test 2.4a: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -822,11 +2258,11 @@ public class KdTree {
         System.out.println("Test 2.4b: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -852,11 +2288,11 @@ public class KdTree {
         System.out.println("Test 2.5a: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -877,11 +2313,11 @@ public class KdTree {
         System.out.println("Test 2.5b: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -901,11 +2337,11 @@ public class KdTree {
         System.out.println("Test 2.5c: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -925,11 +2361,11 @@ public class KdTree {
         System.out.println("Test 2.5d: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -949,11 +2385,11 @@ public class KdTree {
         System.out.println("Test 2.6a: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             KdTree tree = new KdTree();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 tree.insert(p);
             }
@@ -1011,11 +2447,11 @@ public class KdTree {
 
         // Test 2.9a: Intermixed Calls
         System.out.println("Test 2.9a: Intermixed Calls");
-        In in = new In("input20K-1x1-nd.txt");
+        PointReader in = new PointReader("input20K-1x1-nd.txt");
         tree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int k = 0; k < in.size(); k++) {
+            double x = in.x(k);
+            double y = in.y(k);
             p = new Point2D(x, y);
             double check = StdRandom.uniform(0.0, 1.0);
             if (check < 0.3) {
@@ -1055,11 +2491,11 @@ public class KdTree {
 
         // Test 2.9b: Intermixed Calls
         System.out.println("Test 2.9b: Intermixed Calls");
-        in = new In("input20K-1x1-d.txt");
+        in = new PointReader("input20K-1x1-d.txt");
         tree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int k = 0; k < in.size(); k++) {
+            double x = in.x(k);
+            double y = in.y(k);
             p = new Point2D(x, y);
             double check = StdRandom.uniform(0.0, 1.0);
             if (check < 0.3) {
@@ -1100,11 +2536,11 @@ public class KdTree {
 
         // Test 2.9c: Intermixed Calls
         System.out.println("Test 2.9c: Intermixed Calls");
-        in = new In("input20K-1x1.txt");
+        in = new PointReader("input20K-1x1.txt");
         tree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int k = 0; k < in.size(); k++) {
+            double x = in.x(k);
+            double y = in.y(k);
             p = new Point2D(x, y);
             double check = StdRandom.uniform(0.0, 1.0);
             if (check < 0.3) {
@@ -1142,5 +2578,633 @@ public class KdTree {
                     System.out.println("no nearest");
             }
         }
+        System.out.println("---");
+
+        // Test 2.10: build()
+        input = new String[] {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "vertical7.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.10: build()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            Stack<Point2D> points = new Stack<Point2D>();
+            tree = new KdTree();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
+                p = new Point2D(x, y);
+                points.push(p);
+                tree.insert(p);
+            }
+            Point2D[] a = new Point2D[points.size()];
+            int i = 0;
+            for (Point2D t : points)
+                a[i++] = t;
+            KdTree built = KdTree.build(a);
+            System.out.println("size: " + tree.size() + ", " + built.size());
+            System.out.println("height: " + tree.height() + ", " + built.height());
+            boolean same = true;
+            for (Point2D t : a)
+                same = same && built.contains(t);
+            for (int j = 0; j < 100; j++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                same = same && tree.contains(p) == built.contains(p)
+                        && tree.nearest(p).distanceSquaredTo(p)
+                        == built.nearest(p).distanceSquaredTo(p);
+            }
+            System.out.println("matches insert(): " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.11: parallel build()
+        input = new String[] {
+                "input20K-1x1-d.txt", "input100K.txt", "input200K.txt"
+        };
+        System.out.println("Test 2.11: parallel build()");
+        ForkJoinPool pool = new ForkJoinPool();
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            Point2D[] a = in.points();
+            KdTree built = KdTree.build(a);
+            for (int cutoff : new int[] { 1, 1000 }) {
+                KdTree parallel = KdTree.build(a, pool, cutoff);
+                System.out.println("cutoff " + cutoff + " same shape: "
+                                           + sameShape(built.root, parallel.root));
+            }
+        }
+        pool.shutdown();
+        System.out.println("---");
+
+        // Test 2.12: knn()
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.12: knn()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            PointSET brute = new PointSET();
+            tree = new KdTree();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
+                p = new Point2D(x, y);
+                brute.insert(p);
+                tree.insert(p);
+            }
+            boolean same = true;
+            for (int k : new int[] { 0, 1, 5, 50 }) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                // The i-th point must be as close as the i-th closest point of a full sort
+                MaxPQ<Point2D> all = new MaxPQ<Point2D>(p.distanceToOrder());
+                for (Point2D t : brute.range(new RectHV(0, 0, 1, 1)))
+                    all.insert(t);
+                Stack<Point2D> sorted = new Stack<Point2D>();
+                while (!all.isEmpty())
+                    sorted.push(all.delMax());
+                int found = 0;
+                Iterator<Point2D> expected = sorted.iterator();
+                for (Point2D t : tree.knn(p, k)) {
+                    found += 1;
+                    same = same && t.distanceSquaredTo(p) == expected.next().distanceSquaredTo(p);
+                }
+                same = same && found == Math.min(k, tree.size());
+            }
+            System.out.println("matches sorted distances: " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.13: radius()
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.13: radius()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            tree = new KdTree();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
+                tree.insert(new Point2D(x, y));
+            }
+            boolean same = true;
+            long rangeVisits = 0;
+            long radiusVisits = 0;
+            QueryStats stats = new QueryStats();
+            tree.setStats(stats);
+            for (int i = 0; i < 100; i++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                double radius = StdRandom.uniform(0.0, 0.2);
+                // Compare with the points of the bounding square that are inside the circle
+                int expected = 0;
+                for (Point2D t : tree.range(new RectHV(p.x() - radius, p.y() - radius,
+                                                       p.x() + radius, p.y() + radius)))
+                    expected += (t.distanceSquaredTo(p) <= radius * radius) ? 1 : 0;
+                rangeVisits += stats.lastVisited();
+                int found = 0;
+                for (Point2D t : tree.radius(p, radius)) {
+                    found += 1;
+                    same = same && t.distanceSquaredTo(p) <= radius * radius;
+                }
+                radiusVisits += stats.lastVisited();
+                same = same && expected == found;
+            }
+            System.out.println("matches range(): " + same);
+            System.out.println("nodes visited by range(), radius(): " + rangeVisits + ", "
+                                       + radiusVisits);
+        }
+        System.out.println("---");
+
+        // Test 2.14: range() with a PointConsumer
+        input = new String[] {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.14: range() with a PointConsumer");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            tree = new KdTree();
+            PointSET brute = new PointSET();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
+                tree.insert(new Point2D(x, y));
+                brute.insert(new Point2D(x, y));
+            }
+            boolean same = true;
+            for (int i = 0; i < 100; i++) {
+                double xmin = StdRandom.uniform(0.0, 1.0);
+                double xmax = StdRandom.uniform(xmin, 1.0);
+                double ymin = StdRandom.uniform(0.0, 1.0);
+                double ymax = StdRandom.uniform(ymin, 1.0);
+                RectHV rect = new RectHV(xmin, ymin, xmax, ymax);
+                // range() is built on the consumer, so check against the brute force search
+                SET<Point2D> expected = new SET<Point2D>();
+                for (Point2D t : brute.range(rect))
+                    expected.add(t);
+                Stack<Point2D> found = new Stack<Point2D>();
+                tree.range(rect, found::push);
+                SET<Point2D> distinct = new SET<Point2D>();
+                for (Point2D t : found) {
+                    same = same && expected.contains(t);
+                    distinct.add(t);
+                }
+                same = same && found.size() == expected.size() && distinct.size() == found.size();
+            }
+            System.out.println("matches range(): " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.15: rangeCount()
+        input = new String[] {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "input200K.txt"
+        };
+        System.out.println("Test 2.15: rangeCount()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            Point2D[] a = in.points();
+            tree = new KdTree();
+            for (Point2D t : a)
+                tree.insert(t);
+            boolean same = true;
+            long rangeVisits = 0;
+            long countVisits = 0;
+            for (KdTree t : new KdTree[] { tree, KdTree.build(a) }) {
+                QueryStats stats = new QueryStats();
+                t.setStats(stats);
+                for (int i = 0; i < 100; i++) {
+                    // Large rectangles, at least half of the unit square on each side
+                    double xmin = StdRandom.uniform(0.0, 0.5);
+                    double xmax = StdRandom.uniform(xmin + 0.5, 1.0);
+                    double ymin = StdRandom.uniform(0.0, 0.5);
+                    double ymax = StdRandom.uniform(ymin + 0.5, 1.0);
+                    RectHV rect = new RectHV(xmin, ymin, xmax, ymax);
+                    int expected = 0;
+                    for (Point2D q : t.range(rect))
+                        expected += 1;
+                    rangeVisits += stats.lastVisited();
+                    same = same && expected == t.rangeCount(rect);
+                    countVisits += stats.lastVisited();
+                }
+            }
+            System.out.println("matches range(): " + same);
+            System.out.println("nodes visited by range(), rangeCount(): " + rangeVisits + ", "
+                                       + countVisits);
+        }
+        System.out.println("---");
+
+        // Test 2.16: remove()
+        input = new String[] {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.16: remove()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            Point2D[] a = in.points();
+            tree = KdTree.build(a);
+            tree.setRebuildThreshold(0.25);
+            SET<Point2D> brute = new SET<Point2D>();
+            for (Point2D t : a)
+                brute.add(t);
+
+            // Keep removing and inserting random points of the file
+            boolean same = true;
+            for (int i = 0; i < 4 * a.length; i++) {
+                p = a[StdRandom.uniform(a.length)];
+                if (StdRandom.uniform(0.0, 1.0) < 0.6) {
+                    tree.remove(p);
+                    brute.delete(p);
+                }
+                else {
+                    tree.insert(p);
+                    brute.add(p);
+                }
+            }
+            same = same && tree.size() == brute.size();
+            for (Point2D t : a)
+                same = same && tree.contains(t) == brute.contains(t);
+            for (int i = 0; i < 100 && !brute.isEmpty(); i++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                Point2D nearest = tree.nearest(p);
+                same = same && brute.contains(nearest);
+                for (Point2D t : brute)
+                    same = same && t.distanceSquaredTo(p) >= nearest.distanceSquaredTo(p);
+                RectHV rect = new RectHV(0, 0, p.x(), p.y());
+                int expected = 0;
+                for (Point2D t : brute)
+                    expected += rect.contains(t) ? 1 : 0;
+                int found = 0;
+                for (Point2D t : tree.range(rect))
+                    found += brute.contains(t) ? 1 : 0;
+                same = same && expected == found && expected == tree.rangeCount(rect);
+            }
+            System.out.println("size: " + tree.size() + ", height: " + tree.height());
+            System.out.println("matches SET: " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.17: insert() with setAlpha()
+        input = new String[] {
+                "vertical7.txt", "horizontal8.txt", "input10K.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.17: insert() with setAlpha()");
+        for (String string : input) {
+            System.out.println(string);
+            in = new PointReader(string);
+            Point2D[] a = Arrays.copyOf(in.points(), Math.min(in.size(), 10000));
+            // Sorted input turns an unbalanced kdtree into a list
+            Arrays.sort(a);
+            tree = new KdTree();
+            KdTree balanced = new KdTree();
+            balanced.setAlpha(0.7);
+            PointSET brute = new PointSET();
+            for (Point2D t : a) {
+                tree.insert(t);
+                balanced.insert(t);
+                brute.insert(t);
+            }
+            boolean same = balanced.size() == brute.size();
+            for (Point2D t : a)
+                same = same && balanced.contains(t);
+            for (int i = 0; i < 100; i++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                same = same && brute.nearest(p).distanceSquaredTo(p)
+                        == balanced.nearest(p).distanceSquaredTo(p);
+            }
+            // Every node keeps at most alpha of its subtree in one child, which bounds the height
+            int bound = (int) Math.floor(Math.log(balanced.size()) / Math.log(1 / 0.7)) + 1;
+            System.out.println("height: " + tree.height() + ", " + balanced.height()
+                                       + ", at most " + bound + ": "
+                                       + (balanced.height() <= bound));
+            System.out.println("matches PointSET: " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.18: setStats()
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.18: setStats()");
+        for (String string : input) {
+            System.out.println(string);
+            tree = KdTree.build(new PointReader(string).points());
+            QueryStats stats = new QueryStats();
+            tree.setStats(stats);
+            boolean same = true;
+            for (int i = 0; i < 100; i++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                tree.nearest(p);
+                // nearest() measures every node it visits, and every child of a visited node is
+                // either visited or pruned
+                same = same && stats.lastResults() == 1 && stats.lastDistances() > 0
+                        && stats.lastDistances() == stats.lastVisited()
+                        && stats.lastMaxDepth() < tree.height()
+                        && stats.lastVisited() + stats.lastPruned() <= 2 * stats.lastVisited() + 1;
+                RectHV rect = new RectHV(p.x() / 2, p.y() / 2, p.x(), p.y());
+                int found = 0;
+                for (Point2D t : tree.range(rect))
+                    found += 1;
+                same = same && stats.lastResults() == found;
+            }
+            long counted = 0;
+            for (long queries : stats.visitHistogram())
+                counted += queries;
+            same = same && stats.queries() == 200 && counted == 200;
+            tree.setStats(null);
+            tree.nearest(new Point2D(0.5, 0.5));
+            same = same && stats.queries() == 200;
+            System.out.println(stats);
+            System.out.println("matches range() & nearest(): " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.19: nearestApprox()
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.19: nearestApprox()");
+        for (String string : input) {
+            System.out.println(string);
+            tree = KdTree.build(new PointReader(string).points());
+            boolean same = true;
+            for (int i = 0; i < 100; i++) {
+                p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                double exact = tree.nearest(p).distanceTo(p);
+                same = same && tree.nearestApprox(p, 0.0).distanceTo(p) == exact;
+                for (double epsilon : new double[] { 0.1, 0.5, 1.0 })
+                    same = same && tree.nearestApprox(p, epsilon).distanceTo(p)
+                            <= (1 + epsilon) * exact;
+                // With a budget the answer is some point of the tree, no closer than the nearest
+                Point2D budgeted = tree.nearestApprox(p, 0.0, 4);
+                same = same && tree.contains(budgeted) && budgeted.distanceTo(p) >= exact;
+            }
+            System.out.println("within (1 + epsilon) of nearest(): " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.20: compact() & nearestAll()
+        input = new String[] {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.20: compact() & nearestAll()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            KdTree inserted = new KdTree();
+            for (Point2D point : points)
+                inserted.insert(point);
+            inserted.remove(points[0]);
+            Point2D[] queries = new Point2D[100];
+            for (int i = 0; i < queries.length; i++)
+                queries[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+
+            boolean same = true;
+            for (SpaceFillingCurve curve : SpaceFillingCurve.values()) {
+                KdTree compacted = new KdTree();
+                for (Point2D point : points)
+                    compacted.insert(point);
+                compacted.remove(points[0]);
+                compacted.compact(curve);
+                same = same && compacted.size() == inserted.size() && !compacted.contains(points[0])
+                        && compacted.height() <= KdTree.build(points).height();
+                for (int i = 1; i < points.length; i++)
+                    same = same && compacted.contains(points[i]);
+                Point2D[] batch = compacted.nearestAll(queries);
+                for (int i = 0; i < queries.length; i++) {
+                    same = same && batch[i].distanceSquaredTo(queries[i])
+                            == inserted.nearest(queries[i]).distanceSquaredTo(queries[i]);
+                    RectHV rect = new RectHV(0, 0, queries[i].x(), queries[i].y());
+                    same = same && compacted.rangeCount(rect) == inserted.rangeCount(rect);
+                }
+            }
+            System.out.println("matches insert(): " + same);
+        }
+        System.out.println("---");
+
+        // Test 2.21: rangeLazy(), range(rect, limit) & rangeAny()
+        input = new String[] {
+                "input0.txt", "input10-4x4-d.txt", "vertical7.txt", "circle10000.txt",
+                "input200K.txt"
+        };
+        System.out.println("Test 2.21: rangeLazy(), range(rect, limit) & rangeAny()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            tree = new KdTree();
+            for (Point2D point : points)
+                tree.insert(point);
+            if (points.length > 0)
+                tree.remove(points[0]);
+            boolean same = true;
+            for (int i = 0; i < 100; i++) {
+                double xmin = StdRandom.uniform(0.0, 1.0);
+                double xmax = StdRandom.uniform(xmin, 1.0);
+                double ymin = StdRandom.uniform(0.0, 1.0);
+                double ymax = StdRandom.uniform(ymin, 1.0);
+                RectHV rect = new RectHV(xmin, ymin, xmax, ymax);
+                SET<Point2D> expected = new SET<Point2D>();
+                for (Point2D point : tree.range(rect))
+                    expected.add(point);
+                SET<Point2D> lazy = new SET<Point2D>();
+                int count = 0;
+                for (Point2D point : tree.rangeLazy(rect)) {
+                    same = same && expected.contains(point);
+                    lazy.add(point);
+                    count += 1;
+                }
+                same = same && count == expected.size() && lazy.size() == count;
+                int limit = StdRandom.uniform(0, 10);
+                count = 0;
+                for (Point2D point : tree.range(rect, limit)) {
+                    same = same && expected.contains(point);
+                    count += 1;
+                }
+                same = same && count == Math.min(limit, expected.size());
+                same = same && tree.rangeAny(rect) == !expected.isEmpty();
+            }
+            System.out.println("matches range(): " + same);
+        }
+
+        // Stopping early visits a small part of a large rectangle
+        QueryStats stats = new QueryStats();
+        tree.setStats(stats);
+        RectHV half = new RectHV(0, 0, 0.5, 1);
+        tree.range(half);
+        long full = stats.lastVisited();
+        tree.range(half, 100);
+        long limited = stats.lastVisited();
+        tree.rangeAny(half);
+        System.out.println("nodes visited for half the square: range() " + full
+                                   + ", range(rect, 100) " + limited + ", rangeAny() "
+                                   + stats.lastVisited());
+        System.out.println("---");
+
+        // Test 2.22: setCache()
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 2.22: setCache()");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            tree = KdTree.build(points);
+            KdTree plain = KdTree.build(points);
+            NearestCache cache = new NearestCache(12, 0.01);
+            tree.setCache(cache);
+            boolean same = true;
+            for (int i = 0; i < 1000; i++) {
+                // Queries wander around a few spots, so many of them land in cached cells
+                p = new Point2D(0.25 * (i % 4) + StdRandom.uniform(0.0, 0.02),
+                                0.3 + StdRandom.uniform(0.0, 0.02));
+                double exact = plain.nearest(p).distanceTo(p);
+                same = same && tree.nearest(p).distanceTo(p) <= exact + cache.maxError();
+
+                // Insert a point right next to the query, then take it out again
+                if (i % 100 == 0) {
+                    Point2D close = new Point2D(p.x() + 1e-7, p.y());
+                    tree.insert(close);
+                    plain.insert(close);
+                    same = same && tree.nearest(p).equals(close);
+                    tree.remove(close);
+                    plain.remove(close);
+                    same = same && !tree.nearest(p).equals(close);
+                }
+            }
+            same = same && cache.hits() > 0 && cache.size() <= cache.capacity();
+            System.out.println(cache);
+            System.out.println("within maxError() of nearest(): " + same);
+        }
+
+        // Cells small enough that their indices pass the range of an int keep their own entries
+        boolean fresh = true;
+        for (double cellSize : new double[] { 3e-10, 1e-11, 1e-15 }) {
+            tree = new KdTree();
+            tree.insert(new Point2D(0.1, 0.1));
+            tree.setCache(new NearestCache(16, cellSize));
+            Point2D far = new Point2D(0.9, 0.9);
+            tree.nearest(far);
+            tree.insert(far);
+            fresh = fresh && tree.nearest(far).equals(far);
+            fresh = fresh && tree.nearest(new Point2D(0.1, 0.1)).equals(new Point2D(0.1, 0.1));
+        }
+        System.out.println("small cells answer after insert(): " + fresh);
+
+        // Cells too small to index the unit square with a long are refused
+        boolean refused = false;
+        try {
+            new NearestCache(16, 1e-20);
+        }
+        catch (IllegalArgumentException e) {
+            refused = true;
+        }
+        System.out.println("cell size 1e-20 refused: " + refused);
+
+        // Queries too far out to index with a long skip the cache instead of sharing one cell;
+        // the tree itself only promises answers inside the unit square, so compare with a tree
+        // without a cache
+        tree = new KdTree();
+        KdTree plain = new KdTree();
+        NearestCache outside = new NearestCache(16, 1e-3);
+        tree.setCache(outside);
+        Point2D[] far = {
+                new Point2D(1e17, 0.5), new Point2D(2e17, 0.5), new Point2D(-1e17, -1e17)
+        };
+        for (Point2D t : far) {
+            tree.insert(t);
+            plain.insert(t);
+        }
+        boolean skipped = true;
+        for (Point2D t : far)
+            skipped = skipped && tree.nearest(t).equals(plain.nearest(t));
+        skipped = skipped && outside.size() == 0 && outside.misses() == far.length;
+        System.out.println("far queries skip the cache: " + skipped);
+
+        // Test 2.23: nearest(p, hint)
+        input = new String[] {
+                "input10-4x4-d.txt", "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("---");
+        System.out.println("Test 2.23: nearest(p, hint)");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            tree = KdTree.build(points);
+            QueryStats cold = new QueryStats();
+            QueryStats warm = new QueryStats();
+            boolean same = true;
+            Point2D last = null;
+            p = new Point2D(0.5, 0.5);
+            for (int i = 0; i < 1000; i++) {
+                // The query drifts in small steps, and the last answer is the hint for the next
+                p = new Point2D(Math.abs(p.x() + StdRandom.uniform(-0.01, 0.01)) % 1.0,
+                                Math.abs(p.y() + StdRandom.uniform(-0.01, 0.01)) % 1.0);
+                tree.setStats(cold);
+                double exact = tree.nearest(p).distanceSquaredTo(p);
+                tree.setStats(warm);
+                last = tree.nearest(p, last);
+                same = same && last.distanceSquaredTo(p) == exact;
+
+                // A hint that is not in the tree still gives the exact answer
+                tree.setStats(null);
+                Point2D stray = new Point2D(StdRandom.uniform(0.0, 1.0),
+                                            StdRandom.uniform(0.0, 1.0));
+                same = same && tree.nearest(p, stray).distanceSquaredTo(p) == exact;
+            }
+
+            // A removed hint is not given back
+            tree.remove(last);
+            same = same && !last.equals(tree.nearest(p, last));
+            System.out.println("matches nearest(): " + same);
+            System.out.println("nodes visited: nearest() " + cold.visited()
+                                       + ", nearest(p, hint) " + warm.visited());
+        }
+        System.out.println("---");
+
+        // Test 2.24: remove() only rebuilds small subtrees under churn
+        System.out.println("Test 2.24: remove() & insert() churn");
+        int n = 200000;
+        Point2D[] churn = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            churn[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        tree = KdTree.build(churn);
+        Node top = tree.root;
+        long worst = 0;
+        boolean same = true;
+        for (int step = 0; step < 4 * n; step++) {
+            int i = StdRandom.uniform(n);
+            long collections = collections();
+            long start = System.nanoTime();
+            tree.remove(churn[i]);
+            long elapsed = System.nanoTime() - start;
+            // Leave out the first steps while the JIT compiles, and any pause for a collection
+            if (step > n && collections() == collections)
+                worst = Math.max(worst, elapsed);
+            same = same && !tree.contains(churn[i]);
+            churn[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            tree.insert(churn[i]);
+        }
+        same = same && tree.size() == n;
+        for (int i = 0; i < 1000; i++)
+            same = same && tree.contains(churn[StdRandom.uniform(n)]);
+
+        // Then remove most of the points, so subtrees of every size fill up with removed nodes
+        StdRandom.shuffle(churn);
+        for (int i = 0; i < 3 * n / 4; i++) {
+            long collections = collections();
+            long start = System.nanoTime();
+            tree.remove(churn[i]);
+            long elapsed = System.nanoTime() - start;
+            if (collections() == collections)
+                worst = Math.max(worst, elapsed);
+        }
+        same = same && tree.size() == n - 3 * n / 4 && tree.root == top;
+        System.out.println("root never rebuilt: " + same);
+        System.out.printf("slowest remove() %.2f ms, under 20 ms: %b\n", worst / 1e6,
+                          worst < 20000000);
     }
 }
@@ -0,0 +1,271 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeBenchmarkSuite.java
+ *  Execution:    java KdTreeBenchmarkSuite [pattern] [forks]
+ *  Dependencies: KdTree.java PointSET.java PointReader.java
+ *
+ *  Benchmarks insert(), contains(), range() and nearest() of KdTree and
+ *  PointSET over the bundled datasets, in the manner of a JMH average-time
+ *  run:
+ *
+ *    - every benchmark runs in its own JVM (forks, 1 by default; 0 runs
+ *      everything in this JVM), so one benchmark's JIT profile cannot skew
+ *      another's
+ *    - 3 warmup iterations of 200 ms, then 5 measured iterations of 500 ms
+ *    - the queries are fixed by a seed, so every run sees the same workload
+ *    - every result is folded into a sink so no call can be optimized away
+ *
+ *  Only benchmarks whose name matches the regular expression pattern run
+ *  (all by default). Names look like "KdTree.nearest input100K.txt".
+ *  insert() reports the time per point of loading the whole dataset into an
+ *  empty structure; the queries report the time per query.
+ *
+ *  % java KdTreeBenchmarkSuite "nearest input100K"
+ *  Benchmark                                    Cnt        Score      StdDev  Units
+ *  KdTree.nearest input100K.txt                   5        2.107       0.204  us/op
+ *  PointSET.nearest input100K.txt                 5     5528.245     294.683  us/op
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class KdTreeBenchmarkSuite {
+    private static final String[] DATASETS = {
+            "input1000-128x128.txt", "input10K.txt", "input20K.txt", "input40K.txt",
+            "input80K.txt", "input100K.txt", "input200K.txt", "circle10000.txt",
+            "input20K-1x1-d.txt"
+    };
+    private static final String[] STRUCTURES = { "KdTree", "PointSET" };
+    private static final String[] OPERATIONS = { "insert", "contains", "range", "nearest" };
+
+    private static final int WARMUP = 3; // warmup iterations
+    private static final int ITERATIONS = 5; // measured iterations
+    private static final long WARMUP_NANOS = 200_000_000L; // length of a warmup iteration
+    private static final long ITERATION_NANOS = 500_000_000L; // length of a measured iteration
+    private static final int QUERIES = 1024; // queries per workload, a power of two
+    private static final long SEED = 20200401L; // seed of every workload
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // the two structures under test, behind a common interface
+    private interface Index {
+        void insert(Point2D p);
+
+        boolean contains(Point2D p);
+
+        Iterable<Point2D> range(RectHV rect);
+
+        Point2D nearest(Point2D p);
+    }
+
+    private static Index create(String structure) {
+        if (structure.equals("KdTree")) {
+            KdTree tree = new KdTree();
+            return new Index() {
+                public void insert(Point2D p) {
+                    tree.insert(p);
+                }
+
+                public boolean contains(Point2D p) {
+                    return tree.contains(p);
+                }
+
+                public Iterable<Point2D> range(RectHV rect) {
+                    return tree.range(rect);
+                }
+
+                public Point2D nearest(Point2D p) {
+                    return tree.nearest(p);
+                }
+            };
+        }
+        if (structure.equals("PointSET")) {
+            PointSET set = new PointSET();
+            return new Index() {
+                public void insert(Point2D p) {
+                    set.insert(p);
+                }
+
+                public boolean contains(Point2D p) {
+                    return set.contains(p);
+                }
+
+                public Iterable<Point2D> range(RectHV rect) {
+                    return set.range(rect);
+                }
+
+                public Point2D nearest(Point2D p) {
+                    return set.nearest(p);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown structure: " + structure);
+    }
+
+    // one call of a benchmark; i picks the query of the workload
+    private interface Operation {
+        void run(int i);
+    }
+
+    // the operation a benchmark times, with its data loaded and its workload generated
+    private static Operation operation(String structure, String name, Point2D[] points) {
+        StdRandom.setSeed(SEED);
+        switch (name) {
+            case "insert":
+                return i -> {
+                    Index index = create(structure);
+                    for (Point2D p : points)
+                        index.insert(p);
+                    sink += index.contains(points[0]) ? 1 : 0;
+                };
+            case "contains": {
+                // half of the queries are points of the dataset, half are random points
+                Index index = load(structure, points);
+                Point2D[] q = new Point2D[QUERIES];
+                for (int i = 0; i < QUERIES; i++)
+                    q[i] = (i % 2 == 0) ? points[StdRandom.uniform(points.length)]
+                                        : new Point2D(StdRandom.uniform(), StdRandom.uniform());
+                return i -> sink += index.contains(q[i & (QUERIES - 1)]) ? 1 : 0;
+            }
+            case "range": {
+                // rectangles up to 0.1 wide and tall, placed anywhere in the unit square
+                Index index = load(structure, points);
+                RectHV[] q = new RectHV[QUERIES];
+                for (int i = 0; i < QUERIES; i++) {
+                    double x = StdRandom.uniform(0.0, 0.9);
+                    double y = StdRandom.uniform(0.0, 0.9);
+                    q[i] = new RectHV(x, y, x + StdRandom.uniform(0.0, 0.1),
+                                      y + StdRandom.uniform(0.0, 0.1));
+                }
+                return i -> {
+                    for (Point2D p : index.range(q[i & (QUERIES - 1)]))
+                        sink += 1;
+                };
+            }
+            case "nearest": {
+                Index index = load(structure, points);
+                Point2D[] q = new Point2D[QUERIES];
+                for (int i = 0; i < QUERIES; i++)
+                    q[i] = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+                return i -> sink += index.nearest(q[i & (QUERIES - 1)]).hashCode();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    private static Index load(String structure, Point2D[] points) {
+        Index index = create(structure);
+        for (Point2D p : points)
+            index.insert(p);
+        return index;
+    }
+
+    // calls op for at least the given time and returns the average microseconds per call
+    private static double iteration(Operation op, long nanos) {
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            op.run((int) calls);
+            calls += 1;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return elapsed / 1e3 / calls;
+    }
+
+    // runs one benchmark in this JVM and returns the score of every measured iteration
+    private static double[] measure(String benchmark) {
+        String[] parts = benchmark.split("[. ]", 3);
+        Point2D[] points = new PointReader(parts[2]).points();
+        Operation op = operation(parts[0], parts[1], points);
+        // insert() times a whole dataset per call, so report the time per point
+        int perCall = parts[1].equals("insert") ? points.length : 1;
+
+        for (int i = 0; i < WARMUP; i++)
+            iteration(op, WARMUP_NANOS);
+        double[] scores = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++)
+            scores[i] = iteration(op, ITERATION_NANOS) / perCall;
+        return scores;
+    }
+
+    // runs one benchmark in a new JVM with the same class path
+    private static double[] fork(String benchmark) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+                + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+                                                    System.getProperty("java.class.path"),
+                                                    "KdTreeBenchmarkSuite", "--run", benchmark);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                last = line;
+        }
+        if (process.waitFor() != 0 || last == null)
+            throw new IllegalStateException("Fork of " + benchmark + " failed");
+
+        String[] fields = last.trim().split(" ");
+        double[] scores = new double[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            scores[i] = Double.parseDouble(fields[i]);
+        return scores;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // a forked JVM runs a single benchmark and prints its scores
+        if (args.length == 2 && args[0].equals("--run")) {
+            double[] scores = measure(args[1]);
+            StringBuilder line = new StringBuilder();
+            for (double score : scores)
+                line.append(score).append(' ');
+            System.out.println(line.toString().trim());
+            System.err.println("sink " + sink);
+            return;
+        }
+
+        String pattern = (args.length > 0) ? args[0] : ".*";
+        int forks = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+
+        List<String> benchmarks = new ArrayList<String>();
+        for (String operation : OPERATIONS)
+            for (String dataset : DATASETS)
+                for (String structure : STRUCTURES) {
+                    String benchmark = structure + "." + operation + " " + dataset;
+                    if (benchmark.matches(".*(" + pattern + ").*"))
+                        benchmarks.add(benchmark);
+                }
+
+        StdOut.printf("%-40s %7s %12s %11s  %s\n", "Benchmark", "Cnt", "Score", "StdDev", "Units");
+        for (String benchmark : benchmarks) {
+            List<Double> scores = new ArrayList<Double>();
+            for (int f = 0; f < Math.max(forks, 1); f++) {
+                for (double score : (forks == 0) ? measure(benchmark) : fork(benchmark))
+                    scores.add(score);
+            }
+
+            double mean = 0.0;
+            for (double score : scores)
+                mean += score / scores.size();
+            double variance = 0.0;
+            for (double score : scores)
+                variance += (score - mean) * (score - mean) / Math.max(scores.size() - 1, 1);
+            StdOut.printf("%-40s %7d %12.3f %11.3f  %s\n",
+                          benchmark, scores.size(), mean, Math.sqrt(variance), "us/op");
+        }
+        if (forks == 0)
+            System.err.println("sink " + sink);
+    }
+}
@@ -0,0 +1,85 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeBuildBenchmark.java
+ *  Execution:    java KdTreeBuildBenchmark [n] [cutoff]
+ *  Dependencies: KdTree.java PointReader.java
+ *
+ *  Times the sequential KdTree.build() against the fork/join build with
+ *  1, 2, 4, ... worker threads up to the number of available processors,
+ *  on input100K.txt, input200K.txt and n random points in the unit square
+ *  (10,000,000 by default). Subtrees with at most cutoff points (10,000 by
+ *  default) are built without forking.
+ *
+ *  % java -Xmx8g KdTreeBuildBenchmark
+ *  input100K.txt (100000 points)
+ *  sequential     82.4 ms
+ *   1 threads     84.0 ms   speedup  0.98
+ *   2 threads     49.7 ms   speedup  1.66
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class KdTreeBuildBenchmark {
+    private static final int TRIALS = 5; // timed builds per configuration
+
+    // read the points of a dataset file
+    private static Point2D[] read(String filename) {
+        Point2D[] points = new PointReader(filename).points();
+        return points;
+    }
+
+    // n points chosen uniformly at random with a fixed seed
+    private static Point2D[] random(int n) {
+        StdRandom.setSeed(20200401L);
+        Point2D[] points = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            points[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        return points;
+    }
+
+    // fastest of TRIALS builds in milliseconds, after one warmup build
+    private static double time(Point2D[] points, ForkJoinPool pool, int cutoff) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int t = 0; t <= TRIALS; t++) {
+            long start = System.nanoTime();
+            KdTree tree = (pool == null) ? KdTree.build(points)
+                                         : KdTree.build(points, pool, cutoff);
+            double elapsed = (System.nanoTime() - start) / 1e6;
+            if (t > 0)
+                best = Math.min(best, elapsed);
+            if (tree.isEmpty())
+                throw new IllegalStateException("empty tree");
+        }
+        return best;
+    }
+
+    private static void run(String name, Point2D[] points, int cutoff) {
+        StdOut.printf("%s (%d points)\n", name, points.length);
+        double sequential = time(points, null, cutoff);
+        StdOut.printf("sequential %8.1f ms\n", sequential);
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double parallel = time(points, pool, cutoff);
+            pool.shutdown();
+            StdOut.printf("%2d threads %8.1f ms   speedup %5.2f\n",
+                          threads, parallel, sequential / parallel);
+            if (threads == processors)
+                break;
+        }
+        StdOut.println();
+    }
+
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+        int cutoff = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+        run("input100K.txt", read("input100K.txt"), cutoff);
+        run("input200K.txt", read("input200K.txt"), cutoff);
+        run("random", random(n), cutoff);
+    }
+}
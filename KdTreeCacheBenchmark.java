@@ -0,0 +1,94 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeCacheBenchmark.java
+ *  Execution:    java KdTreeCacheBenchmark [input.txt] [queries]
+ *  Dependencies: KdTree.java NearestCache.java PointReader.java
+ *
+ *  Replays a mouse hovering over the map, the way NearestNeighborVisualizer
+ *  queries nearest() every 40 ms: the pointer rests at a spot for a while,
+ *  then glides to the next spot a little at a time. Reports the time per
+ *  nearest() query without a cache and with NearestCache at several cell
+ *  sizes, along with the hit rate and the largest error seen against the
+ *  exact answers. The path is fixed by a seed.
+ *
+ *  % java KdTreeCacheBenchmark input100K.txt 1000000
+ *  input100K.txt (100000 points), 1000000 queries
+ *  cache                            us  hit rate    max error  error bound
+ *  none                          0.754      0.0%     0.00e+00     0.00e+00
+ *  1024 cells of 1e-09           0.578     63.1%     0.00e+00     2.83e-09
+ *  1024 cells of 1e-04           0.580     63.1%     0.00e+00     2.83e-04
+ *  1024 cells of 1e-03           0.516     63.1%     1.48e-03     2.83e-03
+ *  1024 cells of 1e-02           0.460     69.0%     1.47e-02     2.83e-02
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class KdTreeCacheBenchmark {
+    private static final int ROUNDS = 3; // timed rounds; the fastest one counts
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // mouse positions: rests of 1 to 50 frames, then glides of 5 to 25 frames
+    private static Point2D[] hover(int n) {
+        StdRandom.setSeed(20200401L);
+        Point2D[] q = new Point2D[n];
+        double x = 0.5;
+        double y = 0.5;
+        int i = 0;
+        while (i < n) {
+            for (int rest = StdRandom.uniform(1, 51); rest > 0 && i < n; rest--)
+                q[i++] = new Point2D(x, y);
+            double tx = StdRandom.uniform(0.0, 1.0);
+            double ty = StdRandom.uniform(0.0, 1.0);
+            int frames = StdRandom.uniform(5, 26);
+            for (int f = 1; f <= frames && i < n; f++)
+                q[i++] = new Point2D(x + (tx - x) * f / frames, y + (ty - y) * f / frames);
+            x = tx;
+            y = ty;
+        }
+        return q;
+    }
+
+    public static void main(String[] args) {
+        String filename = (args.length > 0) ? args[0] : "input100K.txt";
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+        KdTree tree = KdTree.build(new PointReader(filename).points());
+        Point2D[] q = hover(n);
+        double[] exact = new double[n];
+        for (int i = 0; i < n; i++)
+            exact[i] = tree.nearest(q[i]).distanceTo(q[i]);
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, tree.size(), n);
+        StdOut.printf("%-24s %10s %9s %12s %12s\n", "cache", "us", "hit rate", "max error",
+                      "error bound");
+        double[] cellSizes = { 0.0, 1e-9, 1e-4, 1e-3, 1e-2 };
+        for (double cellSize : cellSizes) {
+            NearestCache cache = (cellSize == 0) ? null : new NearestCache(1024, cellSize);
+            double best = Double.POSITIVE_INFINITY;
+            for (int round = 0; round < ROUNDS; round++) {
+                // Every round starts from an empty cache
+                tree.setCache(cache);
+                if (cache != null)
+                    cache.reset();
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++)
+                    sink += tree.nearest(q[i]).hashCode();
+                best = Math.min(best, (System.nanoTime() - start) / 1e3 / n);
+            }
+
+            // One more pass to measure how far the cached answers are off
+            tree.setCache(cache);
+            double error = 0;
+            for (int i = 0; i < n; i++)
+                error = Math.max(error, tree.nearest(q[i]).distanceTo(q[i]) - exact[i]);
+            String name = (cache == null) ? "none" : String.format("1024 cells of %.0e", cellSize);
+            StdOut.printf("%-24s %10.3f %8.1f%% %12.2e %12.2e\n", name, best,
+                          (cache == null) ? 0 : 100 * cache.hitRate(), error,
+                          (cache == null) ? 0 : cache.maxError());
+        }
+        tree.setCache(null);
+        System.err.println("sink " + sink);
+    }
+}
@@ -0,0 +1,102 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeKnnBenchmark.java
+ *  Execution:    java KdTreeKnnBenchmark [input.txt] [queries]
+ *  Dependencies: KdTree.java PointReader.java QueryStats.java
+ *
+ *  Compares KdTree.knn() against finding the k nearest points by calling
+ *  range() with a square around the query that doubles in size until it
+ *  holds k points and the k-th closest of them lies inside the circle the
+ *  square encloses. Reports nodes visited and time per query for random
+ *  queries with a fixed seed over input100K.txt (by default).
+ *
+ *  % java KdTreeKnnBenchmark input100K.txt 10000
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.MaxPQ;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class KdTreeKnnBenchmark {
+
+    // squared distance to the k-th closest point found by repeated range() calls
+    private static double rangeKnn(KdTree tree, Point2D q, int k) {
+        double half = Math.sqrt((double) k / tree.size()) / 2;
+        while (true) {
+            RectHV rect = new RectHV(q.x() - half, q.y() - half, q.x() + half, q.y() + half);
+            MaxPQ<Point2D> heap = new MaxPQ<Point2D>(q.distanceToOrder());
+            for (Point2D p : tree.range(rect)) {
+                heap.insert(p);
+                if (heap.size() > k)
+                    heap.delMax();
+            }
+            // The answer is only certain once the k-th point is inside the inscribed circle
+            boolean covers = half >= 1;
+            if (heap.size() == k && heap.max().distanceSquaredTo(q) <= half * half || covers)
+                return heap.isEmpty() ? 0 : heap.max().distanceSquaredTo(q);
+            half *= 2;
+        }
+    }
+
+    // squared distance to the k-th closest point found by knn()
+    private static double knn(KdTree tree, Point2D q, int k) {
+        double worst = 0;
+        for (Point2D p : tree.knn(q, k))
+            worst = p.distanceSquaredTo(q);
+        return worst;
+    }
+
+    public static void main(String[] args) {
+        String filename = (args.length > 0) ? args[0] : "input100K.txt";
+        int queries = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+
+        Point2D[] points = new PointReader(filename).points();
+        KdTree tree = new KdTree();
+        for (Point2D p : points)
+            tree.insert(p);
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, tree.size(), queries);
+        StdOut.printf("%5s %14s %14s %12s %12s\n",
+                      "k", "range visits", "knn visits", "range us", "knn us");
+        for (int k : new int[] { 1, 10, 100 }) {
+            StdRandom.setSeed(k);
+            Point2D[] q = new Point2D[queries];
+            for (int i = 0; i < queries; i++)
+                q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+
+            // Run both once untimed so the JIT has compiled them, and check the answers agree
+            for (int i = 0; i < queries; i++) {
+                if (rangeKnn(tree, q[i], k) != knn(tree, q[i], k))
+                    throw new IllegalStateException("knn() disagrees with range() at " + q[i]);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < queries; i++)
+                rangeKnn(tree, q[i], k);
+            double rangeTime = (System.nanoTime() - start) / 1e3 / queries;
+
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++)
+                knn(tree, q[i], k);
+            double knnTime = (System.nanoTime() - start) / 1e3 / queries;
+
+            // Count visits in a separate pass so counting does not slow down the timed ones
+            QueryStats stats = new QueryStats();
+            tree.setStats(stats);
+            for (int i = 0; i < queries; i++)
+                rangeKnn(tree, q[i], k);
+            long rangeVisits = stats.visited();
+            stats.reset();
+            for (int i = 0; i < queries; i++)
+                knn(tree, q[i], k);
+            long knnVisits = stats.visited();
+            tree.setStats(null);
+
+            StdOut.printf("%5d %14.1f %14.1f %12.2f %12.2f\n", k,
+                          (double) rangeVisits / queries, (double) knnVisits / queries,
+                          rangeTime, knnTime);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeLayoutBenchmark.java
+ *  Execution:    java KdTreeLayoutBenchmark [input.txt] [queries]
+ *  Dependencies: KdTree.java FlatKdTree.java SpaceFillingCurve.java
+ *                PointReader.java
+ *
+ *  Times range() over large rectangles (0.2 to 0.5 wide and tall) and
+ *  nearest() for a KdTree loaded by insert() in file order, the same tree
+ *  after compact(MORTON) and compact(HILBERT), and KdTree.build(). Each
+ *  tree answers the nearest() queries one at a time in random order and
+ *  as a batch through nearestAll(), which sorts them along the Hilbert
+ *  curve first. FlatKdTree is included for reference. The queries are
+ *  fixed by a seed. Defaults to input200K.txt and 200000 queries.
+ *
+ *  % java KdTreeLayoutBenchmark input200K.txt 200000
+ *  input200K.txt (200000 points), 200000 queries
+ *  layout                   range us   nearest us     batch us
+ *  insert()                   2542.2         3.59         1.72
+ *  compact(MORTON)             780.0         1.89         1.17
+ *  compact(HILBERT)            992.4         1.83         1.30
+ *  build()                    1570.3         2.12         1.35
+ *  FlatKdTree                  736.1         0.74         0.90
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.function.Function;
+
+public class KdTreeLayoutBenchmark {
+    private static final int ROUNDS = 3; // timed rounds; the fastest one counts
+    private static final int RECTS = 200; // range() queries per round
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // best time in microseconds per query over ROUNDS rounds
+    private static double time(Runnable queries, int n) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            queries.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1e3 / n);
+        }
+        return best;
+    }
+
+    private static void report(String name, RectHV[] rects, Point2D[] q,
+                               Function<RectHV, Iterable<Point2D>> range,
+                               Function<Point2D, Point2D> nearest,
+                               Function<Point2D[], Point2D[]> nearestAll) {
+        double rangeTime = time(() -> {
+            for (RectHV rect : rects) {
+                for (Point2D p : range.apply(rect))
+                    sink += 1;
+            }
+        }, rects.length);
+        double nearestTime = time(() -> {
+            for (Point2D p : q)
+                sink += nearest.apply(p).hashCode();
+        }, q.length);
+        double batchTime = time(() -> sink += nearestAll.apply(q).length, q.length);
+        StdOut.printf("%-22s %10.1f %12.2f %12.2f\n", name, rangeTime, nearestTime, batchTime);
+    }
+
+    public static void main(String[] args) {
+        String filename = (args.length > 0) ? args[0] : "input200K.txt";
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+        Point2D[] points = new PointReader(filename).points();
+
+        StdRandom.setSeed(20200401L);
+        RectHV[] rects = new RectHV[RECTS];
+        for (int i = 0; i < RECTS; i++) {
+            double w = StdRandom.uniform(0.2, 0.5);
+            double h = StdRandom.uniform(0.2, 0.5);
+            double x = StdRandom.uniform(0.0, 1.0 - w);
+            double y = StdRandom.uniform(0.0, 1.0 - h);
+            rects[i] = new RectHV(x, y, x + w, y + h);
+        }
+        Point2D[] q = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, points.length, n);
+        StdOut.printf("%-22s %10s %12s %12s\n", "layout", "range us", "nearest us", "batch us");
+        KdTree inserted = new KdTree();
+        for (Point2D p : points)
+            inserted.insert(p);
+        report("insert()", rects, q, inserted::range, inserted::nearest, inserted::nearestAll);
+        for (SpaceFillingCurve curve : SpaceFillingCurve.values()) {
+            KdTree compacted = new KdTree();
+            for (Point2D p : points)
+                compacted.insert(p);
+            compacted.compact(curve);
+            report("compact(" + curve + ")", rects, q, compacted::range, compacted::nearest,
+                   compacted::nearestAll);
+        }
+        KdTree built = KdTree.build(points);
+        report("build()", rects, q, built::range, built::nearest, built::nearestAll);
+        FlatKdTree flat = new FlatKdTree(points);
+        report("FlatKdTree", rects, q, flat::range, flat::nearest, flat::nearestAll);
+        System.err.println("sink " + sink);
+    }
+}
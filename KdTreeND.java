@@ -0,0 +1,558 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Kdtree over points with any number of coordinates. Points are
+ *               kept in one flat double array, k values per point, with the
+ *               children of each node in two int arrays, so no object is
+ *               created per point. The node at depth d splits on coordinate
+ *               d % k; smaller coordinates go left, greater or equal ones go
+ *               right.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class KdTreeND {
+    private final int k; // number of coordinates per point
+    private double[] coords; // coordinates of node i in [i * k, (i + 1) * k)
+    private int[] left; // left child of node i, or -1
+    private int[] right; // right child of node i, or -1
+    private int root = -1; // index of the root node, or -1 if the tree is empty
+    private int size; // number of nodes
+
+    /**
+     * Initialize an empty tree of {@code k} dimensional points.
+     *
+     * @param k number of coordinates per point
+     */
+    public KdTreeND(int k) {
+        // Throw an exception if there are no dimensions
+        if (k < 1)
+            throw new IllegalArgumentException("KdTreeND needs at least one dimension");
+
+        this.k = k;
+        this.coords = new double[16 * k];
+        this.left = new int[16];
+        this.right = new int[16];
+    }
+
+    /**
+     * Initialize a balanced tree of the distinct points in {@code points}, which holds
+     * {@code points.length / k} points of {@code k} coordinates each, one after the other.
+     *
+     * @param k      number of coordinates per point
+     * @param points coordinates of the points; the array is not modified
+     */
+    public KdTreeND(int k, double[] points) {
+        // Throw an exception if there are no dimensions or the points do not fit them
+        if (k < 1)
+            throw new IllegalArgumentException("KdTreeND needs at least one dimension");
+        if (points == null)
+            throw new IllegalArgumentException("Null argument to KdTreeND()");
+        if (points.length % k != 0)
+            throw new IllegalArgumentException("Number of coordinates is not a multiple of k");
+
+        this.k = k;
+        int n = points.length / k;
+        double[] a = points.clone();
+        sort(a, 0, n - 1);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || compare(a, m - 1, i) != 0) {
+                System.arraycopy(a, i * k, a, m * k, k);
+                m++;
+            }
+        }
+
+        this.coords = Arrays.copyOf(a, Math.max(m, 16) * k);
+        this.left = new int[Math.max(m, 16)];
+        this.right = new int[Math.max(m, 16)];
+        this.size = m;
+        this.root = build(0, m, 0);
+    }
+
+    /**
+     * Helper function to arrange nodes {@code [lo..hi)} as a balanced subtree. The median on the
+     * axis of {@code depth} becomes the root, with every smaller point before it and every
+     * greater or equal point after it.
+     *
+     * @param lo    first node of the subtree
+     * @param hi    one past the last node of the subtree
+     * @param depth depth of the subtree's root
+     * @return index of the subtree's root, or -1 if it is empty
+     */
+    private int build(int lo, int hi, int depth) {
+        if (lo >= hi)
+            return -1;
+        int axis = depth % k;
+        int mid = select(lo, hi - 1, (lo + hi) >>> 1, axis);
+        left[mid] = build(lo, mid, depth + 1);
+        right[mid] = build(mid + 1, hi, depth + 1);
+        return mid;
+    }
+
+    /**
+     * Helper function to move the {@code m}th smallest coordinate on {@code axis} of nodes
+     * {@code [lo..hi]} into place with 3-way quickselect. Points equal to it on that axis may be
+     * anywhere after it, so it is moved to the first of them.
+     *
+     * @param lo   first node of the range
+     * @param hi   last node of the range
+     * @param m    index to select
+     * @param axis coordinate to order by
+     * @return index of the first point whose coordinate equals the selected one
+     */
+    private int select(int lo, int hi, int m, int axis) {
+        while (lo < hi) {
+            double pivot = coords[(lo + (hi - lo) / 2) * k + axis];
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                double key = coords[i * k + axis];
+                if (key < pivot)
+                    swap(coords, lt++, i++);
+                else if (key > pivot)
+                    swap(coords, i, gt--);
+                else
+                    i++;
+            }
+            if (m < lt)
+                hi = lt - 1;
+            else if (m > gt)
+                lo = gt + 1;
+            else
+                return lt;
+        }
+        return lo;
+    }
+
+    /**
+     * Helper function to sort points {@code [lo..hi]} of {@code a} in lexicographic order using
+     * 3-way quicksort.
+     *
+     * @param a  coordinates of the points
+     * @param lo first point of the range
+     * @param hi last point of the range
+     */
+    private void sort(double[] a, int lo, int hi) {
+        while (lo < hi) {
+            // Point lt is always equal to the pivot, so it is what the others are compared to
+            swap(a, lo, lo + (hi - lo) / 2);
+            int lt = lo, gt = hi, i = lo + 1;
+            while (i <= gt) {
+                int cmp = compare(a, i, lt);
+                if (cmp < 0)
+                    swap(a, lt++, i++);
+                else if (cmp > 0)
+                    swap(a, i, gt--);
+                else
+                    i++;
+            }
+            // Recurse into the smaller side and loop on the larger one to bound the stack
+            if (lt - lo < hi - gt) {
+                sort(a, lo, lt - 1);
+                lo = gt + 1;
+            }
+            else {
+                sort(a, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+    }
+
+    /**
+     * Compares point {@code i} and point {@code j} of {@code a} coordinate by coordinate.
+     *
+     * @param a coordinates of the points
+     * @param i index of the first point
+     * @param j index of the second point
+     * @return negative, zero or positive as point {@code i} is smaller, equal or greater
+     */
+    private int compare(double[] a, int i, int j) {
+        for (int d = 0; d < k; d++) {
+            if (a[i * k + d] < a[j * k + d])
+                return -1;
+            if (a[i * k + d] > a[j * k + d])
+                return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Swaps the coordinates of point {@code i} and point {@code j} of {@code a}.
+     *
+     * @param a coordinates of the points
+     * @param i index of the first point
+     * @param j index of the second point
+     */
+    private void swap(double[] a, int i, int j) {
+        for (int d = 0; d < k; d++) {
+            double temp = a[i * k + d];
+            a[i * k + d] = a[j * k + d];
+            a[j * k + d] = temp;
+        }
+    }
+
+    /**
+     * Returns the number of coordinates per point.
+     *
+     * @return k
+     */
+    public int dimension() {
+        return k;
+    }
+
+    /**
+     * Check to see if the tree is empty.
+     *
+     * @return {@code true} if there are no points in the tree; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of points in the tree.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns coordinate {@code axis} of point {@code i}, where points are numbered from
+     * {@code 0} to {@code size() - 1}. Reading results by index saves copying them.
+     *
+     * @param i    index of the point
+     * @param axis index of the coordinate
+     * @return the coordinate
+     */
+    public double coordinate(int i, int axis) {
+        // Throw an exception if the point or the coordinate does not exist
+        if (i < 0 || i >= size || axis < 0 || axis >= k)
+            throw new IllegalArgumentException("No coordinate " + axis + " of point " + i);
+        return coords[i * k + axis];
+    }
+
+    /**
+     * Returns a copy of the coordinates of point {@code i}.
+     *
+     * @param i index of the point
+     * @return coordinates of the point
+     */
+    public double[] point(int i) {
+        // Throw an exception if the point does not exist
+        if (i < 0 || i >= size)
+            throw new IllegalArgumentException("No point " + i);
+        return Arrays.copyOfRange(coords, i * k, (i + 1) * k);
+    }
+
+    /**
+     * Throws an exception if {@code p} is not a point of this tree's dimension.
+     *
+     * @param p      coordinates of the point
+     * @param method name of the method checking its argument
+     */
+    private void check(double[] p, String method) {
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to " + method + "()");
+        if (p.length != k)
+            throw new IllegalArgumentException("Point given to " + method + "() has "
+                                                       + p.length + " coordinates, not " + k);
+    }
+
+    /**
+     * Inserts the point {@code p} if the tree does not already contain it. The coordinates are
+     * copied, so the caller may reuse the array.
+     *
+     * @param p coordinates of the point
+     */
+    public void insert(double[] p) {
+        check(p, "insert");
+
+        // Find the empty link the point belongs at, or the point itself
+        int parent = -1;
+        boolean goLeft = false;
+        int node = root;
+        int depth = 0;
+        while (node != -1) {
+            if (equals(node, p))
+                return;
+            parent = node;
+            goLeft = p[depth % k] < coords[node * k + depth % k];
+            node = goLeft ? left[node] : right[node];
+            depth += 1;
+        }
+
+        // Grow the arrays by doubling when they are full
+        if (size == left.length) {
+            coords = Arrays.copyOf(coords, 2 * size * k);
+            left = Arrays.copyOf(left, 2 * size);
+            right = Arrays.copyOf(right, 2 * size);
+        }
+        System.arraycopy(p, 0, coords, size * k, k);
+        left[size] = -1;
+        right[size] = -1;
+        if (parent == -1)
+            root = size;
+        else if (goLeft)
+            left[parent] = size;
+        else
+            right[parent] = size;
+        size += 1;
+    }
+
+    /**
+     * Check if node {@code node} holds the point {@code p}.
+     *
+     * @param node index of the node
+     * @param p    coordinates of the point
+     * @return {@code true} if every coordinate matches; {@code false} otherwise
+     */
+    private boolean equals(int node, double[] p) {
+        for (int d = 0; d < k; d++) {
+            if (coords[node * k + d] != p[d])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check if the point given exists in the tree.
+     *
+     * @param p coordinates of the point
+     * @return {@code true} if the point is in the tree; {@code false} otherwise
+     */
+    public boolean contains(double[] p) {
+        check(p, "contains");
+
+        // An equal point is always reached by following the greater or equal side
+        int node = root;
+        int depth = 0;
+        while (node != -1 && !equals(node, p)) {
+            node = (p[depth % k] < coords[node * k + depth % k]) ? left[node] : right[node];
+            depth += 1;
+        }
+        return node != -1;
+    }
+
+    /**
+     * Finds all the points inside of the box with corners {@code min} and {@code max}, edges
+     * included.
+     *
+     * @param min smallest coordinates of the box
+     * @param max greatest coordinates of the box
+     * @return copies of the points inside of the box
+     */
+    public Iterable<double[]> range(double[] min, double[] max) {
+        Stack<double[]> inside = new Stack<double[]>();
+        range(min, max, i -> inside.push(point(i)));
+        return inside;
+    }
+
+    /**
+     * Passes the index of every point inside of the box with corners {@code min} and
+     * {@code max} to {@code consumer}, without copying any of them.
+     *
+     * @param min      smallest coordinates of the box
+     * @param max      greatest coordinates of the box
+     * @param consumer {@code IntConsumer} that receives the indices of the points inside
+     */
+    public void range(double[] min, double[] max, IntConsumer consumer) {
+        check(min, "range");
+        check(max, "range");
+        if (consumer == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        // Depth-first search with an explicit stack, so a deep tree cannot overflow the call stack
+        int[] nodes = new int[64];
+        int[] depths = new int[64];
+        int top = 0;
+        if (root != -1) {
+            nodes[top] = root;
+            depths[top++] = 0;
+        }
+        while (top > 0) {
+            int node = nodes[--top];
+            int depth = depths[top];
+            if (inside(node, min, max))
+                consumer.accept(node);
+
+            // Only search the sides of the split that the box reaches
+            if (top + 2 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                depths = Arrays.copyOf(depths, 2 * depths.length);
+            }
+            int axis = depth % k;
+            double split = coords[node * k + axis];
+            if (left[node] != -1 && min[axis] < split) {
+                nodes[top] = left[node];
+                depths[top++] = depth + 1;
+            }
+            if (right[node] != -1 && max[axis] >= split) {
+                nodes[top] = right[node];
+                depths[top++] = depth + 1;
+            }
+        }
+    }
+
+    /**
+     * Check if node {@code node} is inside of the box with corners {@code min} and {@code max}.
+     *
+     * @param node index of the node
+     * @param min  smallest coordinates of the box
+     * @param max  greatest coordinates of the box
+     * @return {@code true} if every coordinate is within the box; {@code false} otherwise
+     */
+    private boolean inside(int node, double[] min, double[] max) {
+        for (int d = 0; d < k; d++) {
+            double c = coords[node * k + d];
+            if (c < min[d] || c > max[d])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Locates the nearest point in the tree to the queried point.
+     *
+     * @param p coordinates of the queried point
+     * @return copy of the closest point, or {@code null} if the tree is empty
+     */
+    public double[] nearest(double[] p) {
+        int i = nearestIndex(p);
+        return (i == -1) ? null : point(i);
+    }
+
+    /**
+     * Locates the nearest point in the tree to the queried point. The side of each split holding
+     * the target is searched first and the other side only if the split is closer than the best
+     * point found by then.
+     *
+     * @param p coordinates of the queried point
+     * @return index of the closest point, or -1 if the tree is empty
+     */
+    public int nearestIndex(double[] p) {
+        check(p, "nearest");
+
+        // Pending subtrees with their depth and their squared distance across the split
+        int[] nodes = new int[64];
+        int[] depths = new int[64];
+        double[] gaps = new double[64];
+        int top = 0;
+        if (root != -1) {
+            nodes[top] = root;
+            depths[top] = 0;
+            gaps[top++] = 0.0;
+        }
+
+        int best = -1;
+        double bestD = Double.POSITIVE_INFINITY;
+        while (top > 0) {
+            int node = nodes[--top];
+            int depth = depths[top];
+            // Skip the subtree if the best point got closer than its split since it was pushed
+            if (gaps[top] >= bestD)
+                continue;
+
+            double d = 0.0;
+            for (int j = 0; j < k; j++) {
+                double delta = coords[node * k + j] - p[j];
+                d += delta * delta;
+            }
+            if (d < bestD) {
+                best = node;
+                bestD = d;
+            }
+
+            if (top + 2 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                depths = Arrays.copyOf(depths, 2 * depths.length);
+                gaps = Arrays.copyOf(gaps, 2 * gaps.length);
+            }
+            // Push the far side first so the near side is searched first
+            int axis = depth % k;
+            double gap = p[axis] - coords[node * k + axis];
+            int near = (gap < 0) ? left[node] : right[node];
+            int far = (gap < 0) ? right[node] : left[node];
+            if (far != -1 && gap * gap < bestD) {
+                nodes[top] = far;
+                depths[top] = depth + 1;
+                gaps[top++] = gap * gap;
+            }
+            if (near != -1) {
+                nodes[top] = near;
+                depths[top] = depth + 1;
+                gaps[top++] = 0.0;
+            }
+        }
+        return best;
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 8.1: insert(), contains(), range() & nearest() against a linear scan
+        System.out.println("Test 8.1: insert(), contains(), range() & nearest()");
+        for (int k : new int[] { 1, 2, 3, 4 }) {
+            for (int n : new int[] { 0, 10, 20000 }) {
+                System.out.println(k + " dimensions, " + n + " points");
+                // A coarse grid so some points repeat and many share coordinates
+                double[] flat = new double[n * k];
+                for (int i = 0; i < flat.length; i++)
+                    flat[i] = StdRandom.uniform(100) / 100.0;
+                KdTreeND inserted = new KdTreeND(k);
+                for (int i = 0; i < n; i++)
+                    inserted.insert(Arrays.copyOfRange(flat, i * k, (i + 1) * k));
+                KdTreeND built = new KdTreeND(k, flat);
+
+                boolean same = inserted.size() == built.size();
+                for (int i = 0; i < n; i++) {
+                    double[] p = Arrays.copyOfRange(flat, i * k, (i + 1) * k);
+                    same = same && inserted.contains(p) && built.contains(p);
+                }
+                for (int q = 0; q < 100; q++) {
+                    double[] p = new double[k];
+                    double[] min = new double[k];
+                    double[] max = new double[k];
+                    for (int d = 0; d < k; d++) {
+                        p[d] = StdRandom.uniform(0.0, 1.0);
+                        min[d] = StdRandom.uniform(0.0, 1.0);
+                        max[d] = StdRandom.uniform(min[d], 1.0);
+                    }
+
+                    // Count distinct points in the box and find the closest distance by scanning
+                    KdTreeND seen = new KdTreeND(k);
+                    double closest = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < n; i++) {
+                        double[] t = Arrays.copyOfRange(flat, i * k, (i + 1) * k);
+                        boolean in = true;
+                        double dist = 0.0;
+                        for (int d = 0; d < k; d++) {
+                            in = in && min[d] <= t[d] && t[d] <= max[d];
+                            dist += (t[d] - p[d]) * (t[d] - p[d]);
+                        }
+                        if (in)
+                            seen.insert(t);
+                        closest = Math.min(closest, dist);
+                    }
+
+                    for (KdTreeND tree : new KdTreeND[] { inserted, built }) {
+                        int found = 0;
+                        for (double[] t : tree.range(min, max))
+                            found += 1;
+                        same = same && found == seen.size() && tree.contains(p) == (closest == 0);
+                        double[] near = tree.nearest(p);
+                        double dist = 0.0;
+                        for (int d = 0; near != null && d < k; d++)
+                            dist += (near[d] - p[d]) * (near[d] - p[d]);
+                        same = same && (n == 0 ? near == null : dist == closest);
+                    }
+                }
+                System.out.println("matches linear scan: " + same);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeNearestBenchmark.java
+ *  Execution:    java KdTreeNearestBenchmark [queries]
+ *  Dependencies: KdTree.java PointReader.java QueryStats.java
+ *
+ *  Reports the average number of nodes KdTree.nearest() visits and the
+ *  average time per query for random queries with a fixed seed over
+ *  input100K.txt and circle10000.txt, then the same for nearestApprox()
+ *  over a range of epsilons and node budgets. For the approximate searches
+ *  it also reports how far off the answers are: the mean and largest ratio
+ *  of the distance found to the exact nearest distance, and the share of
+ *  queries answered exactly.
+ *
+ *  % java KdTreeNearestBenchmark 10000
+ *  input100K.txt (100000 points), 10000 queries
+ *  search                 nodes        us  mean ratio   max ratio   exact
+ *  nearest()               32.8      2.76      1.0000      1.0000  100.0%
+ *  eps 0.10                31.4      1.93      1.0000      1.0530   99.8%
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class KdTreeNearestBenchmark {
+
+    // build a kd-tree by inserting the points of a dataset file in order
+    private static KdTree read(String filename) {
+        PointReader in = new PointReader(filename);
+        KdTree tree = new KdTree();
+        for (int i = 0; i < in.size(); i++)
+            tree.insert(new Point2D(in.x(i), in.y(i)));
+        return tree;
+    }
+
+    // uniformly random queries in the unit square with a fixed seed
+    private static Point2D[] queries(int n) {
+        StdRandom.setSeed(20200401L);
+        Point2D[] q = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            q[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        return q;
+    }
+
+    // one way of answering a nearest neighbor query
+    private interface Search {
+        Point2D find(Point2D p);
+    }
+
+    // prints nodes visited, time and accuracy against the exact answers of a search
+    private static void report(String name, KdTree tree, Search search, Point2D[] q,
+                               Point2D[] exact) {
+        int n = q.length;
+        // warm up the JIT before timing
+        for (int i = 0; i < n; i++)
+            search.find(q[i]);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            search.find(q[i]);
+        double time = (System.nanoTime() - start) / 1e3 / n;
+
+        // Count visits in a separate pass so counting does not slow down the timed one
+        QueryStats stats = new QueryStats();
+        tree.setStats(stats);
+        double sum = 0.0;
+        double max = 1.0;
+        int same = 0;
+        for (int i = 0; i < n; i++) {
+            Point2D found = search.find(q[i]);
+            double best = exact[i].distanceTo(q[i]);
+            double ratio = (best == 0.0) ? 1.0 : found.distanceTo(q[i]) / best;
+            sum += ratio;
+            max = Math.max(max, ratio);
+            same += (found.distanceSquaredTo(q[i]) == exact[i].distanceSquaredTo(q[i])) ? 1 : 0;
+        }
+        tree.setStats(null);
+        StdOut.printf("%-20s %7.1f %9.2f %11.4f %11.4f %6.1f%%\n", name,
+                      (double) stats.visited() / n, time, sum / n, max, 100.0 * same / n);
+    }
+
+    private static void run(String filename, int n) {
+        KdTree tree = read(filename);
+        Point2D[] q = queries(n);
+        Point2D[] exact = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            exact[i] = tree.nearest(q[i]);
+        StdOut.printf("%s (%d points), %d queries\n", filename, tree.size(), n);
+        StdOut.printf("%-20s %7s %9s %11s %11s %7s\n",
+                      "search", "nodes", "us", "mean ratio", "max ratio", "exact");
+
+        report("nearest()", tree, tree::nearest, q, exact);
+        for (double epsilon : new double[] { 0.05, 0.1, 0.25, 0.5, 1.0 })
+            report(String.format("eps %.2f", epsilon), tree,
+                   p -> tree.nearestApprox(p, epsilon), q, exact);
+        for (int budget : new int[] { 128, 64, 32 })
+            report(String.format("budget %d", budget), tree,
+                   p -> tree.nearestApprox(p, 0.0, budget), q, exact);
+        for (int budget : new int[] { 128, 64, 32 })
+            report(String.format("eps 0.25 budget %d", budget), tree,
+                   p -> tree.nearestApprox(p, 0.25, budget), q, exact);
+        StdOut.println();
+    }
+
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        run("input100K.txt", n);
+        run("circle10000.txt", n);
+    }
+}
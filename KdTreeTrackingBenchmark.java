@@ -0,0 +1,122 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeTrackingBenchmark.java
+ *  Execution:    java KdTreeTrackingBenchmark [input.txt] [queries]
+ *  Dependencies: KdTree.java QueryStats.java PointReader.java
+ *
+ *  Follows a query point moving smoothly over the map and compares
+ *  nearest(p), which starts every search from nothing, with nearest(p, hint)
+ *  given the answer for the previous position. Reports the nodes visited
+ *  and the time per query along three paths: glides of 5 to 25 frames
+ *  between random spots, the way a mouse moves in NearestNeighborVisualizer,
+ *  a random walk with steps up to 0.002, and a walk along a circle of
+ *  radius 0.45 around the center of the square. The paths are fixed by a
+ *  seed.
+ *
+ *  % java KdTreeTrackingBenchmark circle10000.txt 100000
+ *  circle10000.txt (10000 points), 100000 queries
+ *  path       cold nodes   warm nodes     saved    cold us    warm us
+ *  glide           471.6        464.5      1.5%      9.604     10.239
+ *  walk            330.4        322.5      2.4%      7.121      8.165
+ *  orbit           154.3        152.0      1.5%      3.762      3.719
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class KdTreeTrackingBenchmark {
+    private static final int ROUNDS = 3; // timed rounds; the fastest one counts
+
+    private static long sink; // results of every call, so none of them is dead code
+
+    // mouse positions: glides of 5 to 25 frames between random spots
+    private static Point2D[] glide(int n) {
+        Point2D[] q = new Point2D[n];
+        double x = 0.5;
+        double y = 0.5;
+        int i = 0;
+        while (i < n) {
+            double tx = StdRandom.uniform(0.0, 1.0);
+            double ty = StdRandom.uniform(0.0, 1.0);
+            int frames = StdRandom.uniform(5, 26);
+            for (int f = 1; f <= frames && i < n; f++)
+                q[i++] = new Point2D(x + (tx - x) * f / frames, y + (ty - y) * f / frames);
+            x = tx;
+            y = ty;
+        }
+        return q;
+    }
+
+    // random walk with steps up to 0.002 in each coordinate, kept inside the unit square
+    private static Point2D[] walk(int n) {
+        Point2D[] q = new Point2D[n];
+        double x = 0.5;
+        double y = 0.5;
+        for (int i = 0; i < n; i++) {
+            x = Math.min(1, Math.max(0, x + StdRandom.uniform(-0.002, 0.002)));
+            y = Math.min(1, Math.max(0, y + StdRandom.uniform(-0.002, 0.002)));
+            q[i] = new Point2D(x, y);
+        }
+        return q;
+    }
+
+    // points along a circle of radius 0.45 around the center, 1000 steps per turn
+    private static Point2D[] orbit(int n) {
+        Point2D[] q = new Point2D[n];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / 1000;
+            q[i] = new Point2D(0.5 + 0.45 * Math.cos(angle), 0.5 + 0.45 * Math.sin(angle));
+        }
+        return q;
+    }
+
+    // best time in microseconds per query over ROUNDS rounds, with or without hints
+    private static double time(KdTree tree, Point2D[] q, boolean warm) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; round++) {
+            Point2D last = null;
+            long start = System.nanoTime();
+            for (Point2D p : q) {
+                last = warm ? tree.nearest(p, last) : tree.nearest(p);
+                sink += last.hashCode();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e3 / q.length);
+        }
+        return best;
+    }
+
+    // average nodes visited per query, with or without hints
+    private static double visits(KdTree tree, Point2D[] q, boolean warm) {
+        QueryStats stats = new QueryStats();
+        tree.setStats(stats);
+        Point2D last = null;
+        for (Point2D p : q)
+            last = warm ? tree.nearest(p, last) : tree.nearest(p);
+        tree.setStats(null);
+        return (double) stats.visited() / stats.queries();
+    }
+
+    private static void report(String name, KdTree tree, Point2D[] q) {
+        double coldVisits = visits(tree, q, false);
+        double warmVisits = visits(tree, q, true);
+        StdOut.printf("%-8s %12.1f %12.1f %8.1f%% %10.3f %10.3f\n", name, coldVisits, warmVisits,
+                      100 * (1 - warmVisits / coldVisits), time(tree, q, false),
+                      time(tree, q, true));
+    }
+
+    public static void main(String[] args) {
+        String filename = (args.length > 0) ? args[0] : "circle10000.txt";
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+        KdTree tree = KdTree.build(new PointReader(filename).points());
+        StdRandom.setSeed(20200401L);
+
+        StdOut.printf("%s (%d points), %d queries\n", filename, tree.size(), n);
+        StdOut.printf("%-8s %12s %12s %9s %10s %10s\n", "path", "cold nodes", "warm nodes",
+                      "saved", "cold us", "warm us");
+        report("glide", tree, glide(n));
+        report("walk", tree, walk(n));
+        report("orbit", tree, orbit(n));
+        System.err.println("sink " + sink);
+    }
+}
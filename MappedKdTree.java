@@ -0,0 +1,385 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Read-only kdtree that answers queries straight from a
+ *               memory-mapped snapshot file written by FlatKdTree.save() or
+ *               KdTree.save(), so opening a saved tree needs no parsing and
+ *               no rebuild.
+ *
+ *               Snapshot layout, all little-endian:
+ *                 int    magic      0x4B445431 ("KDT1")
+ *                 int    version    1
+ *                 int    n          number of points
+ *                 int    reserved   0
+ *                 long   checksum   CRC32C of the coordinate bytes
+ *                 double x[n]       x coordinates in FlatKdTree order
+ *                 double y[n]       y coordinates in FlatKdTree order
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+public class MappedKdTree {
+    private static final int MAGIC = 0x4B445431; // "KDT1"
+    private static final int VERSION = 1; // current snapshot version
+    private static final int HEADER = 24; // bytes before the coordinates, a multiple of 8
+
+    private final DoubleBuffer xs; // x coordinates in tree order, backed by the file
+    private final DoubleBuffer ys; // y coordinates in tree order, backed by the file
+    private final int n; // number of points
+
+    /**
+     * Class definition for the closest point found so far by {@code nearest()}.
+     */
+    private static class Best {
+        private int index = -1; // index of the closest point
+        private double distance = Double.POSITIVE_INFINITY; // squared distance to the target
+    }
+
+    /**
+     * Open the snapshot {@code filename}. The header and checksum are checked once; after that
+     * every query reads the mapped file directly.
+     *
+     * @param filename name of a file written by {@code save()}
+     */
+    public MappedKdTree(String filename) {
+        // Throw an exception if the file name is null
+        if (filename == null)
+            throw new IllegalArgumentException("Null argument to MappedKdTree()");
+
+        // The mapping stays valid after the channel is closed
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                                                    StandardOpenOption.READ)) {
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(filename + " is not a kdtree snapshot");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + filename, e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException(filename + " is not a kdtree snapshot");
+        if (buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException(filename + " has unsupported version "
+                                                       + buffer.getInt(4));
+        n = buffer.getInt(8);
+        if (n < 0 || buffer.capacity() != HEADER + 16L * n)
+            throw new IllegalArgumentException(filename + " is truncated");
+
+        ByteBuffer coordinates = buffer.position(HEADER).slice();
+        CRC32C crc = new CRC32C();
+        crc.update(coordinates.duplicate());
+        if (crc.getValue() != buffer.getLong(16))
+            throw new IllegalArgumentException(filename + " fails its checksum");
+
+        xs = coordinates.limit(8 * n).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        ys = coordinates.limit(16 * n).position(8 * n).slice().order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+    }
+
+    /**
+     * Writes a snapshot of the points ({@code x[i]}, {@code y[i]}), which must already be in
+     * {@code FlatKdTree} order.
+     *
+     * @param filename name of the file to write; an existing file is replaced
+     * @param x        x coordinates in tree order
+     * @param y        y coordinates in tree order
+     */
+    static void write(String filename, double[] x, double[] y) {
+        // One mapping holds at most 2 GB, which caps a snapshot at about 134 million points
+        int n = x.length;
+        if (HEADER + 16L * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many points for one snapshot: " + n);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 16 * n).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER);
+        for (int i = 0; i < n; i++)
+            buffer.putDouble(x[i]);
+        for (int i = 0; i < n; i++)
+            buffer.putDouble(y[i]);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER, 16 * n);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putInt(12, 0)
+              .putLong(16, crc.getValue());
+        buffer.rewind();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + filename, e);
+        }
+    }
+
+    /**
+     * Check to see if the tree is empty.
+     *
+     * @return {@code true} if there are no points in the tree; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Returns the number of points in the tree.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Check if the point given exists in the tree.
+     *
+     * @param p {@code Point2D} point to check exists
+     * @return {@code true} if the point is in the tree; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw exception if point given is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        return contains(0, n, 0, p.x(), p.y());
+    }
+
+    /**
+     * Helper function to search {@code [lo..hi)} for the point ({@code x}, {@code y}).
+     *
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param x     x coordinate of the point
+     * @param y     y coordinate of the point
+     * @return {@code true} if the subtree has the point; {@code false} otherwise
+     */
+    private boolean contains(int lo, int hi, int depth, double x, double y) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs.get(mid) == x && ys.get(mid) == y)
+                return true;
+            double key = ((depth & 1) == 0) ? x : y;
+            double split = ((depth & 1) == 0) ? xs.get(mid) : ys.get(mid);
+            // Points equal to the split can be on either side, so search both
+            if (key == split && contains(lo, mid, depth + 1, x, y))
+                return true;
+            if (key < split)
+                hi = mid;
+            else
+                lo = mid + 1;
+            depth += 1;
+        }
+        return false;
+    }
+
+    /**
+     * Finds all the points inside of given rectangle.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        Stack<Point2D> inside = new Stack<Point2D>();
+        range(inside, 0, n, 0, rect.xmin(), rect.ymin(), rect.xmax(), rect.ymax());
+        return inside;
+    }
+
+    /**
+     * Helper function to collect the points of {@code [lo..hi)} inside of the query rectangle.
+     *
+     * @param stack {@code Stack<Point2D>} that contains all points inside the query
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param xmin  min x coordinate of the query
+     * @param ymin  min y coordinate of the query
+     * @param xmax  max x coordinate of the query
+     * @param ymax  max y coordinate of the query
+     */
+    private void range(Stack<Point2D> stack, int lo, int hi, int depth,
+                       double xmin, double ymin, double xmax, double ymax) {
+        if (lo >= hi)
+            return;
+
+        int mid = (lo + hi) >>> 1;
+        double x = xs.get(mid);
+        double y = ys.get(mid);
+        if (xmin <= x && x <= xmax && ymin <= y && y <= ymax)
+            stack.push(new Point2D(x, y));
+
+        // Only search the halves that the query reaches
+        double min = ((depth & 1) == 0) ? xmin : ymin;
+        double max = ((depth & 1) == 0) ? xmax : ymax;
+        double split = ((depth & 1) == 0) ? x : y;
+        if (min <= split)
+            range(stack, lo, mid, depth + 1, xmin, ymin, xmax, ymax);
+        if (max >= split)
+            range(stack, mid + 1, hi, depth + 1, xmin, ymin, xmax, ymax);
+    }
+
+    /**
+     * Locates the nearest point in the tree to the queried point.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in the tree closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        // No points closest if there are no points in the tree
+        if (n == 0)
+            return null;
+
+        Best best = new Best();
+        nearest(best, 0, n, 0, p.x(), p.y());
+        return new Point2D(xs.get(best.index), ys.get(best.index));
+    }
+
+    /**
+     * Helper function to search {@code [lo..hi)} for a point closer than {@code best}. The half
+     * holding the target is searched first and the other half only if the splitting line is
+     * closer than the best point found.
+     *
+     * @param best  {@code Best} closest point found so far
+     * @param lo    first index of the subtree
+     * @param hi    one past the last index of the subtree
+     * @param depth depth of the subtree's root
+     * @param x     x coordinate of the target
+     * @param y     y coordinate of the target
+     */
+    private void nearest(Best best, int lo, int hi, int depth, double x, double y) {
+        if (lo >= hi)
+            return;
+
+        int mid = (lo + hi) >>> 1;
+        double dx = xs.get(mid) - x;
+        double dy = ys.get(mid) - y;
+        double d = dx * dx + dy * dy;
+        if (d < best.distance) {
+            best.distance = d;
+            best.index = mid;
+        }
+
+        // Signed distance from the target to the splitting line
+        double gap = ((depth & 1) == 0) ? dx : dy;
+        if (gap > 0) {
+            nearest(best, lo, mid, depth + 1, x, y);
+            if (gap * gap < best.distance)
+                nearest(best, mid + 1, hi, depth + 1, x, y);
+        }
+        else {
+            nearest(best, mid + 1, hi, depth + 1, x, y);
+            if (gap * gap < best.distance)
+                nearest(best, lo, mid, depth + 1, x, y);
+        }
+    }
+
+    // Test Cases
+    public static void main(String[] args) throws IOException {
+        // Test 6.1: save() & reopen against PointSET
+        String[] input = {
+                "input0.txt", "input10-4x4-d.txt", "input20K-1x1-d.txt", "vertical7.txt",
+                "circle10000.txt", "input100K.txt"
+        };
+        System.out.println("Test 6.1: save() & reopen");
+        File file = File.createTempFile("kdtree", ".snapshot");
+        file.deleteOnExit();
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            KdTree source = new KdTree();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++) {
+                source.insert(points[i]);
+                brute.insert(points[i]);
+            }
+            source.save(file.getPath());
+            MappedKdTree tree = new MappedKdTree(file.getPath());
+            System.out.println("size: " + brute.size() + ", " + tree.size());
+
+            boolean same = brute.size() == tree.size();
+            for (Point2D p : points)
+                same = same && tree.contains(p);
+            for (int i = 0; i < 100; i++) {
+                Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                same = same && brute.contains(p) == tree.contains(p);
+                if (!brute.isEmpty())
+                    same = same && brute.nearest(p).distanceSquaredTo(p)
+                            == tree.nearest(p).distanceSquaredTo(p);
+
+                double xmin = StdRandom.uniform(0.0, 1.0);
+                double xmax = StdRandom.uniform(xmin, 1.0);
+                double ymin = StdRandom.uniform(0.0, 1.0);
+                double ymax = StdRandom.uniform(ymin, 1.0);
+                RectHV r = new RectHV(xmin, ymin, xmax, ymax);
+                int expected = 0;
+                for (Point2D t : brute.range(r))
+                    expected += 1;
+                int found = 0;
+                for (Point2D t : tree.range(r))
+                    found += 1;
+                same = same && expected == found;
+            }
+            System.out.println("matches PointSET: " + same);
+        }
+
+        // Test 6.2: a damaged snapshot is rejected
+        System.out.println("Test 6.2: damaged snapshot");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1 }), HEADER + 3);
+        }
+        boolean rejected = false;
+        try {
+            new MappedKdTree(file.getPath());
+        }
+        catch (IllegalArgumentException e) {
+            rejected = true;
+            System.out.println(e.getMessage().replace(file.getPath(), "snapshot"));
+        }
+        System.out.println("rejected: " + rejected);
+
+        // Test 6.3: cold start from text and from a snapshot
+        System.out.println("Test 6.3: cold start");
+        String filename = "input200K.txt";
+        long start = System.nanoTime();
+        In in = new In(filename);
+        KdTree parsed = new KdTree();
+        while (!in.isEmpty())
+            parsed.insert(new Point2D(in.readDouble(), in.readDouble()));
+        long text = System.nanoTime() - start;
+        parsed.save(file.getPath());
+        start = System.nanoTime();
+        MappedKdTree mapped = new MappedKdTree(file.getPath());
+        mapped.nearest(new Point2D(0.5, 0.5));
+        long snapshot = System.nanoTime() - start;
+        System.out.printf("%s: text %.1f ms, snapshot %.1f ms\n",
+                          filename, text / 1e6, snapshot / 1e6);
+    }
+}
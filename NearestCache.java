@@ -0,0 +1,328 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Bounded least recently used cache of nearest() answers for a
+ *               KdTree, keyed by the square cell of side cellSize holding the
+ *               query. A query whose cell was answered before gets that
+ *               answer back without searching the tree. The answer is then
+ *               the exact nearest point of an earlier query in the same cell,
+ *               so it is at most 2 * sqrt(2) * cellSize farther from the
+ *               query than the true nearest point. Inserting a point drops the
+ *               entries it could change and removing a point drops the entries
+ *               that answered with it.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class NearestCache {
+    private static final double MAX_INDEX = 0x1p62; // cell indices past this are not cached
+    private final int capacity; // largest number of cells cached
+    private final double cellSize; // side of a cell
+    private final LinkedHashMap<Cell, Entry> entries; // cached cells, least recently used first
+
+    private long hits; // queries answered from the cache
+    private long misses; // queries that searched the tree
+    private long evictions; // entries dropped to make room
+    private long invalidations; // entries dropped by insert() or remove()
+
+    /**
+     * Class definition for the key of a cell: its column and row. Both are kept whole, since
+     * small cells have indices past the range of an int.
+     */
+    private static final class Cell {
+        private final long column; // index of the cell along x
+        private final long row; // index of the cell along y
+
+        /**
+         * Initialize a Cell.
+         *
+         * @param column index of the cell along x
+         * @param row    index of the cell along y
+         */
+        Cell(long column, long row) {
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Cell))
+                return false;
+            Cell that = (Cell) other;
+            return column == that.column && row == that.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(column * 31 + row);
+        }
+    }
+
+    /**
+     * Class definition for the answer cached for a cell.
+     */
+    private static class Entry {
+        private final Point2D nearest; // nearest point to the query that filled the entry
+        private final double distance; // distance between that query and its nearest point
+
+        /**
+         * Initialize an Entry.
+         *
+         * @param query   {@code Point2D} query the answer was searched for
+         * @param nearest {@code Point2D} nearest point to {@code query}
+         */
+        Entry(Point2D query, Point2D nearest) {
+            this.nearest = nearest;
+            this.distance = query.distanceTo(nearest);
+        }
+    }
+
+    /**
+     * Initialize an empty cache.
+     *
+     * @param capacity largest number of cells to keep answers for
+     * @param cellSize side of the square cells queries are grouped by; smaller cells give more
+     *                 exact answers and fewer hits. It must be more than 2<sup>-62</sup>, about
+     *                 2.2e-19, so cells in the unit square have indices a long holds exactly;
+     *                 queries farther out than 2<sup>62</sup> cells from the origin skip the
+     *                 cache
+     */
+    public NearestCache(int capacity, double cellSize) {
+        // Throw an exception if the capacity or the cell size is out of range
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if (!(cellSize > 0) || Double.isInfinite(cellSize))
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        if (1 / cellSize >= MAX_INDEX)
+            throw new IllegalArgumentException("Cell size must be more than 2^-62: " + cellSize);
+
+        this.capacity = capacity;
+        this.cellSize = cellSize;
+        // Access order makes the map move an entry to the end whenever it is read
+        this.entries = new LinkedHashMap<Cell, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Cell, Entry> eldest) {
+                if (size() <= NearestCache.this.capacity)
+                    return false;
+                evictions += 1;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached answer for the cell holding {@code p}, counting a hit or a miss. A
+     * query too far out to have a key is always a miss.
+     *
+     * @param p {@code Point2D} query
+     * @return cached nearest point, or {@code null} if the cell has no answer
+     */
+    Point2D get(Point2D p) {
+        Cell cell = key(p.x(), p.y());
+        Entry entry = (cell == null) ? null : entries.get(cell);
+        if (entry == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return entry.nearest;
+    }
+
+    /**
+     * Caches {@code nearest} as the answer for the cell holding {@code p}.
+     *
+     * @param p       {@code Point2D} query
+     * @param nearest {@code Point2D} nearest point in the tree to {@code p}
+     */
+    void put(Point2D p, Point2D nearest) {
+        Cell cell = key(p.x(), p.y());
+        if (cell != null && nearest != null)
+            entries.put(cell, new Entry(p, nearest));
+    }
+
+    /**
+     * Drops every entry that {@code p} could be a closer answer for. Any query in the cell of an
+     * entry is within a cell diagonal of the entry's query, so a point farther than the cached
+     * distance plus that diagonal from the whole cell cannot beat the cached answer.
+     *
+     * @param p {@code Point2D} point added to the tree
+     */
+    void inserted(Point2D p) {
+        double diagonal = Math.sqrt(2) * cellSize;
+        Iterator<Map.Entry<Cell, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Cell, Entry> cell = it.next();
+            Entry entry = cell.getValue();
+            double reach = entry.distance + diagonal;
+            if (distanceSquaredToCell(p, cell.getKey()) <= reach * reach) {
+                it.remove();
+                invalidations += 1;
+            }
+        }
+    }
+
+    /**
+     * Drops every entry whose answer is {@code p}. Removing any other point leaves the cached
+     * answers as good as they were.
+     *
+     * @param p {@code Point2D} point removed from the tree
+     */
+    void removed(Point2D p) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().nearest.equals(p)) {
+                it.remove();
+                invalidations += 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the cell holding ({@code x}, {@code y}). Casting an index past the
+     * range of a long would clamp it, and cells far apart would then share a key, so such
+     * points get none.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return key of the cell, or {@code null} if an index is 2<sup>62</sup> or more away from 0
+     */
+    private Cell key(double x, double y) {
+        double column = Math.floor(x / cellSize);
+        double row = Math.floor(y / cellSize);
+        if (!(Math.abs(column) < MAX_INDEX && Math.abs(row) < MAX_INDEX))
+            return null;
+        return new Cell((long) column, (long) row);
+    }
+
+    /**
+     * Returns the squared distance from {@code p} to {@code cell}.
+     *
+     * @param p    {@code Point2D}
+     * @param cell {@code Cell}
+     * @return squared distance; {@code 0} if {@code p} is inside the cell
+     */
+    private double distanceSquaredToCell(Point2D p, Cell cell) {
+        double xmin = cell.column * cellSize;
+        double ymin = cell.row * cellSize;
+        double dx = Math.max(0, Math.max(xmin - p.x(), p.x() - (xmin + cellSize)));
+        double dy = Math.max(0, Math.max(ymin - p.y(), p.y() - (ymin + cellSize)));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Drops every cached answer. The counters are kept.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Drops every cached answer and clears every counter.
+     */
+    public void reset() {
+        clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        invalidations = 0;
+    }
+
+    /**
+     * Returns the largest number of cells the cache keeps answers for.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the side of the cells queries are grouped by.
+     *
+     * @return cell size
+     */
+    public double cellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the most a cached answer can be farther from a query than the true nearest point:
+     * two cell diagonals.
+     *
+     * @return largest error of a cached answer
+     */
+    public double maxError() {
+        return 2 * Math.sqrt(2) * cellSize;
+    }
+
+    /**
+     * Returns the number of cells with a cached answer.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return hits
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries that had to search the tree.
+     *
+     * @return misses
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries dropped to make room for newer ones.
+     *
+     * @return evictions
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because a point was inserted or removed.
+     *
+     * @return invalidations
+     */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the share of queries answered from the cache.
+     *
+     * @return hits divided by queries, or {@code 0} before any query
+     */
+    public double hitRate() {
+        long queries = hits + misses;
+        return (queries == 0) ? 0 : (double) hits / queries;
+    }
+
+    /**
+     * Returns the counters as text.
+     *
+     * @return summary of the counters
+     */
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, "
+                                     + "%d invalidations, %d/%d cells",
+                             hits, misses, 100 * hitRate(), evictions, invalidations,
+                             entries.size(), capacity);
+    }
+}
@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac NearestNeighborVisualizer.java
  *  Execution:    java NearestNeighborVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *  Dependencies: PointSET.java KdTree.java PointReader.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Highlight the closest point to the mouse.
@@ -11,7 +11,6 @@
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.StdDraw;
 
@@ -21,12 +20,12 @@ public class NearestNeighborVisualizer {
 
         // initialize the two data structures with point from file
         String filename = args[0];
-        In in = new In(filename);
+        PointReader in = new PointReader(filename);
         PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int i = 0; i < in.size(); i++) {
+            double x = in.x(i);
+            double y = in.y(i);
             Point2D p = new Point2D(x, y);
             kdtree.insert(p);
             brute.insert(p);
@@ -0,0 +1,16 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Callback that receives the points found by a search.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+
+public interface PointConsumer {
+    /**
+     * Receives one point found by a search.
+     *
+     * @param p {@code Point2D} found by the search
+     */
+    void accept(Point2D p);
+}
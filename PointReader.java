@@ -0,0 +1,311 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Fast reader for files of whitespace separated "x y" points.
+ *               The file is memory-mapped and the numbers are parsed straight
+ *               from its bytes into primitive arrays, optionally splitting the
+ *               file into chunks that are parsed in parallel.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class PointReader {
+    // exact powers of ten; a mantissa below 2^53 divided by one of them rounds correctly
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final double[] xs; // x coordinates in file order
+    private final double[] ys; // y coordinates in file order
+
+    /**
+     * Class definition for the numbers parsed from one chunk of the file.
+     */
+    private static class Chunk {
+        private double[] values = new double[16]; // numbers in file order
+        private int n; // number of values
+
+        /**
+         * Appends {@code value}, doubling the array when it is full.
+         *
+         * @param value number to append
+         */
+        private void add(double value) {
+            if (n == values.length)
+                values = Arrays.copyOf(values, 2 * n);
+            values[n++] = value;
+        }
+    }
+
+    /**
+     * Read every point of {@code filename} on the calling thread.
+     *
+     * @param filename name of a file of "x y" pairs
+     */
+    public PointReader(String filename) {
+        this(filename, 1);
+    }
+
+    /**
+     * Read every point of {@code filename}, splitting the file into {@code chunks} pieces that
+     * are parsed in parallel.
+     *
+     * @param filename name of a file of "x y" pairs
+     * @param chunks   number of pieces to parse in parallel
+     */
+    public PointReader(String filename, int chunks) {
+        // Throw an exception if the file name is null or there are no chunks
+        if (filename == null)
+            throw new IllegalArgumentException("Null argument to PointReader()");
+        if (chunks < 1)
+            throw new IllegalArgumentException("PointReader needs at least one chunk");
+
+        // The mapping stays valid after the channel is closed
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                                                    StandardOpenOption.READ)) {
+            // One mapping holds at most 2 GB
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(filename + " is larger than 2 GB");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + filename, e);
+        }
+
+        // Each chunk parses the numbers that start inside its share of the bytes
+        int length = buffer.capacity();
+        Chunk[] parsed = IntStream.range(0, chunks)
+                                  .parallel()
+                                  .mapToObj(c -> parse(buffer, (int) ((long) c * length / chunks),
+                                                       (int) ((long) (c + 1) * length / chunks)))
+                                  .toArray(Chunk[]::new);
+
+        int n = 0;
+        for (Chunk chunk : parsed)
+            n += chunk.n;
+        if (n % 2 != 0)
+            throw new IllegalArgumentException(filename + " has an x coordinate without a y");
+        xs = new double[n / 2];
+        ys = new double[n / 2];
+        int i = 0;
+        for (Chunk chunk : parsed) {
+            for (int j = 0; j < chunk.n; j++, i++) {
+                if ((i & 1) == 0)
+                    xs[i >> 1] = chunk.values[j];
+                else
+                    ys[i >> 1] = chunk.values[j];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of points read.
+     *
+     * @return number of points
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the x coordinate of point {@code i}.
+     *
+     * @param i index of the point in the file
+     * @return x coordinate
+     */
+    public double x(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Returns the y coordinate of point {@code i}.
+     *
+     * @param i index of the point in the file
+     * @return y coordinate
+     */
+    public double y(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Returns the x coordinates of every point. The array is shared, not copied, so it can be
+     * handed to a bulk loader such as {@code FlatKdTree} without an extra copy.
+     *
+     * @return x coordinates in file order
+     */
+    public double[] xs() {
+        return xs;
+    }
+
+    /**
+     * Returns the y coordinates of every point. The array is shared, not copied.
+     *
+     * @return y coordinates in file order
+     */
+    public double[] ys() {
+        return ys;
+    }
+
+    /**
+     * Returns the points read, in file order.
+     *
+     * @return {@code Point2D[]} of the points
+     */
+    public Point2D[] points() {
+        Point2D[] points = new Point2D[xs.length];
+        for (int i = 0; i < points.length; i++)
+            points[i] = new Point2D(xs[i], ys[i]);
+        return points;
+    }
+
+    /**
+     * Helper function to parse the numbers starting in {@code [from..to)}. A number that runs
+     * past {@code to} is finished here, and a number already running at {@code from} is left
+     * to the chunk before.
+     *
+     * @param buffer bytes of the file
+     * @param from   first byte of the chunk
+     * @param to     one past the last byte of the chunk
+     * @return {@code Chunk} of the numbers in file order
+     */
+    private static Chunk parse(MappedByteBuffer buffer, int from, int to) {
+        Chunk chunk = new Chunk();
+        int limit = buffer.capacity();
+        int pos = from;
+        if (pos > 0 && !isSpace(buffer.get(pos - 1))) {
+            while (pos < limit && !isSpace(buffer.get(pos)))
+                pos++;
+        }
+
+        while (true) {
+            while (pos < to && isSpace(buffer.get(pos)))
+                pos++;
+            if (pos >= to)
+                return chunk;
+
+            int start = pos;
+            boolean negative = false;
+            if (buffer.get(pos) == '-' || buffer.get(pos) == '+')
+                negative = buffer.get(pos++) == '-';
+
+            // Collect up to 18 significant digits and count those after the decimal point
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean simple = true;
+            boolean fraction = false;
+            for (; pos < limit; pos++) {
+                byte b = buffer.get(pos);
+                if (b >= '0' && b <= '9') {
+                    if (digits == 18) {
+                        simple = false;
+                        continue;
+                    }
+                    mantissa = 10 * mantissa + (b - '0');
+                    digits++;
+                    if (fraction)
+                        scale++;
+                }
+                else if (b == '.' && !fraction)
+                    fraction = true;
+                else
+                    break;
+            }
+
+            // Anything unusual, like an exponent, goes through Double.parseDouble()
+            if (pos < limit && !isSpace(buffer.get(pos))) {
+                simple = false;
+                while (pos < limit && !isSpace(buffer.get(pos)))
+                    pos++;
+            }
+            if (simple && digits > 0 && scale < POWERS.length && mantissa < (1L << 53)) {
+                double value = mantissa / POWERS[scale];
+                chunk.add(negative ? -value : value);
+            }
+            else
+                chunk.add(parseDouble(buffer, start, pos));
+        }
+    }
+
+    /**
+     * Helper function to parse the bytes {@code [from..to)} with {@code Double.parseDouble()}.
+     *
+     * @param buffer bytes of the file
+     * @param from   first byte of the number
+     * @param to     one past the last byte of the number
+     * @return the number
+     */
+    private static double parseDouble(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(from + i);
+        String token = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(token);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + token, e);
+        }
+    }
+
+    /**
+     * Check if {@code b} separates numbers.
+     *
+     * @param b byte of the file
+     * @return {@code true} for spaces, tabs, line breaks and other control characters
+     */
+    private static boolean isSpace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 7.1: same points as In.readAllDoubles()
+        String[] input = {
+                "input0.txt", "input1.txt", "input10-4x4-d.txt", "vertical7.txt",
+                "circle10000.txt", "input100K.txt", "input200K.txt"
+        };
+        System.out.println("Test 7.1: same points as In");
+        for (String string : input) {
+            System.out.println(string);
+            double[] expected = new In(string).readAllDoubles();
+            boolean same = true;
+            for (int chunks : new int[] { 1, 3, 8 }) {
+                PointReader reader = new PointReader(string, chunks);
+                same = same && 2 * reader.size() == expected.length;
+                for (int i = 0; same && i < reader.size(); i++)
+                    same = Double.compare(expected[2 * i], reader.x(i)) == 0
+                            && Double.compare(expected[2 * i + 1], reader.y(i)) == 0;
+            }
+            System.out.println("matches In: " + same);
+        }
+
+        // Test 7.2: parse time against In
+        System.out.println("Test 7.2: parse time");
+        String filename = "input200K.txt";
+        int processors = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        new In(filename).readAllDoubles();
+        long in = System.nanoTime() - start;
+        start = System.nanoTime();
+        new PointReader(filename);
+        long sequential = System.nanoTime() - start;
+        start = System.nanoTime();
+        new PointReader(filename, 4 * processors);
+        long parallel = System.nanoTime() - start;
+        System.out.printf("%s: In %.1f ms, PointReader %.1f ms, %d chunks %.1f ms\n",
+                          filename, in / 1e6, sequential / 1e6, 4 * processors, parallel / 1e6);
+    }
+}
@@ -4,7 +4,6 @@
  *  Description:
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
 import edu.princeton.cs.algs4.SET;
@@ -144,13 +143,13 @@ public class PointSET {
         System.out.println("Test 1.1: size() & isEmpty()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             PointSET brute = new PointSET();
             int count = 0;
-            while (!in.isEmpty()) {
+            for (int k = 0; k < in.size(); k++) {
                 count += 1;
-                double x = in.readDouble();
-                double y = in.readDouble();
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 brute.insert(p);
                 double check = StdRandom.uniform(0.0, 1.0);
@@ -169,18 +168,18 @@ public class PointSET {
         System.out.println("Test 1.2: contains()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             PointSET brute = new PointSET();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 brute.insert(p);
             }
-            in = new In(string);
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            in = new PointReader(string);
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 double check = StdRandom.uniform(0.0, 1.0);
                 if (check > 0.9) {
                     Point2D p = new Point2D(x, y);
@@ -198,11 +197,11 @@ public class PointSET {
         System.out.println("Test 1.3: nearest()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             PointSET brute = new PointSET();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 brute.insert(p);
             }
@@ -222,11 +221,11 @@ public class PointSET {
         System.out.println("Test 1.4: range()");
         for (String string : input) {
             System.out.println(string);
-            In in = new In(string);
+            PointReader in = new PointReader(string);
             PointSET brute = new PointSET();
-            while (!in.isEmpty()) {
-                double x = in.readDouble();
-                double y = in.readDouble();
+            for (int k = 0; k < in.size(); k++) {
+                double x = in.x(k);
+                double y = in.y(k);
                 Point2D p = new Point2D(x, y);
                 brute.insert(p);
             }
@@ -290,11 +289,11 @@ public class PointSET {
 
         // Test 1.7: Intermixed Calls
         System.out.println("Test 1.7: Intermixed Calls");
-        In in = new In("input10K-1x1.txt");
+        PointReader in = new PointReader("input10K-1x1.txt");
         brute = new PointSET();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int k = 0; k < in.size(); k++) {
+            double x = in.x(k);
+            double y = in.y(k);
             p = new Point2D(x, y);
             double check = StdRandom.uniform(0.0, 1.0);
             if (check < 0.3) {
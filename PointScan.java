@@ -0,0 +1,121 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Brute-force scans over a slice of two coordinate arrays for
+ *               the closest point, the points in a rectangle and the points in
+ *               a circle. The range and radius scans have no data-dependent
+ *               branch: every index is written and only the count depends on
+ *               the test. Shared by ArrayPointSET and the leaf buckets of
+ *               FlatKdTree.
+ **************************************************************************** */
+
+public class PointScan {
+
+    /**
+     * Prevent instantiation; every scan is static.
+     */
+    private PointScan() {
+    }
+
+    /**
+     * Finds the point of {@code [lo..hi)} closest to ({@code x}, {@code y}), if it is closer than
+     * {@code bound}.
+     *
+     * @param xs    x coordinates
+     * @param ys    y coordinates
+     * @param lo    first index to scan
+     * @param hi    one past the last index to scan
+     * @param x     x coordinate of the target
+     * @param y     y coordinate of the target
+     * @param bound squared distance a point must beat; {@code Double.POSITIVE_INFINITY} for any
+     * @return index of the closest point, or {@code -1} if no point is closer than {@code bound}
+     */
+    static int nearest(double[] xs, double[] ys, int lo, int hi, double x, double y,
+                       double bound) {
+        // A closer point turns up rarely, so this branch predicts well and needs no lanes
+        int best = -1;
+        for (int i = lo; i < hi; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            double d = dx * dx + dy * dy;
+            if (d < bound) {
+                bound = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Appends to {@code out} the indices of the points of {@code [lo..hi)} inside the rectangle
+     * [{@code xmin}, {@code xmax}] x [{@code ymin}, {@code ymax}].
+     *
+     * @param xs    x coordinates
+     * @param ys    y coordinates
+     * @param lo    first index to scan
+     * @param hi    one past the last index to scan
+     * @param xmin  min x coordinate of the rectangle
+     * @param ymin  min y coordinate of the rectangle
+     * @param xmax  max x coordinate of the rectangle
+     * @param ymax  max y coordinate of the rectangle
+     * @param out   indices found; needs room for {@code count + hi - lo} entries
+     * @param count number of entries of {@code out} already used
+     * @return number of entries of {@code out} used afterwards
+     */
+    static int range(double[] xs, double[] ys, int lo, int hi, double xmin, double ymin,
+                     double xmax, double ymax, int[] out, int count) {
+        // Every index is written and the count only moves past the ones inside
+        for (int i = lo; i < hi; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            out[count] = i;
+            count += (xmin <= x & x <= xmax & ymin <= y & y <= ymax) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Appends to {@code out} the indices of the points of {@code [lo..hi)} whose squared
+     * distance to ({@code x}, {@code y}) is at most {@code r2}.
+     *
+     * @param xs    x coordinates
+     * @param ys    y coordinates
+     * @param lo    first index to scan
+     * @param hi    one past the last index to scan
+     * @param x     x coordinate of the center
+     * @param y     y coordinate of the center
+     * @param r2    squared radius
+     * @param out   indices found; needs room for {@code count + hi - lo} entries
+     * @param count number of entries of {@code out} already used
+     * @return number of entries of {@code out} used afterwards
+     */
+    static int radius(double[] xs, double[] ys, int lo, int hi, double x, double y, double r2,
+                      int[] out, int count) {
+        for (int i = lo; i < hi; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            out[count] = i;
+            count += (dx * dx + dy * dy <= r2) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the point ({@code x}, {@code y}) in {@code [lo..hi)}.
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param lo first index to scan
+     * @param hi one past the last index to scan
+     * @param x  x coordinate of the point
+     * @param y  y coordinate of the point
+     * @return index of the point, or {@code -1} if it is not there
+     */
+    static int indexOf(double[] xs, double[] ys, int lo, int hi, double x, double y) {
+        for (int i = lo; i < hi; i++) {
+            if (xs[i] == x & ys[i] == y)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,253 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Counters for the searches of a KdTree: nodes visited, subtrees
+ *               pruned, distance evaluations, deepest node reached and results
+ *               emitted, for the last query and summed over every query, plus
+ *               histograms of query latency and nodes visited.
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public class QueryStats {
+    private static final int BUCKETS = 65; // one per power of two a long can hold, plus zero
+
+    // counters of the last query, or of the query in progress
+    private long visited; // nodes visited
+    private long pruned; // subtrees skipped without visiting their root
+    private long distances; // point to point distances computed
+    private int maxDepth; // depth of the deepest node visited; the root is at depth 0
+    private long results; // points returned or counted
+    private long start; // System.nanoTime() when the query began
+
+    // totals over every query
+    private long queries; // number of queries
+    private long totalVisited; // nodes visited
+    private long totalPruned; // subtrees pruned
+    private long totalDistances; // distances computed
+    private int totalMaxDepth; // deepest node reached by any query
+    private long totalResults; // points returned or counted
+    private final long[] latencies = new long[BUCKETS]; // queries by nanoseconds taken
+    private final long[] visits = new long[BUCKETS]; // queries by nodes visited
+
+    /**
+     * Starts counting a new query.
+     */
+    void begin() {
+        visited = 0;
+        pruned = 0;
+        distances = 0;
+        maxDepth = 0;
+        results = 0;
+        start = System.nanoTime();
+    }
+
+    /**
+     * Counts a node visited at {@code depth}.
+     *
+     * @param depth depth of the node
+     */
+    void visit(int depth) {
+        visited += 1;
+        if (depth > maxDepth)
+            maxDepth = depth;
+    }
+
+    /**
+     * Counts a subtree skipped by the search.
+     */
+    void prune() {
+        pruned += 1;
+    }
+
+    /**
+     * Counts a distance computed between two points.
+     */
+    void distance() {
+        distances += 1;
+    }
+
+    /**
+     * Counts {@code n} points returned or counted.
+     *
+     * @param n number of points
+     */
+    void result(long n) {
+        results += n;
+    }
+
+    /**
+     * Finishes the query and adds its counters to the totals and histograms.
+     */
+    void end() {
+        long latency = System.nanoTime() - start;
+        queries += 1;
+        totalVisited += visited;
+        totalPruned += pruned;
+        totalDistances += distances;
+        totalMaxDepth = Math.max(totalMaxDepth, maxDepth);
+        totalResults += results;
+        latencies[bucket(latency)] += 1;
+        visits[bucket(visited)] += 1;
+    }
+
+    /**
+     * Returns the histogram bucket of {@code value}: {@code 0} for {@code 0}, otherwise {@code
+     * i} for values in [2<sup>i - 1</sup>, 2<sup>i</sup>).
+     *
+     * @param value non-negative value
+     * @return index of the bucket
+     */
+    private static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(value, 0));
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        begin();
+        queries = 0;
+        totalVisited = 0;
+        totalPruned = 0;
+        totalDistances = 0;
+        totalMaxDepth = 0;
+        totalResults = 0;
+        Arrays.fill(latencies, 0);
+        Arrays.fill(visits, 0);
+    }
+
+    /**
+     * Returns the number of queries counted.
+     *
+     * @return number of queries
+     */
+    public long queries() {
+        return queries;
+    }
+
+    /**
+     * Returns the number of nodes the last query visited.
+     *
+     * @return nodes visited
+     */
+    public long lastVisited() {
+        return visited;
+    }
+
+    /**
+     * Returns the number of subtrees the last query skipped.
+     *
+     * @return subtrees pruned
+     */
+    public long lastPruned() {
+        return pruned;
+    }
+
+    /**
+     * Returns the number of point to point distances the last query computed.
+     *
+     * @return distances computed
+     */
+    public long lastDistances() {
+        return distances;
+    }
+
+    /**
+     * Returns the depth of the deepest node the last query visited.
+     *
+     * @return depth, where the root is at depth {@code 0}
+     */
+    public int lastMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the number of points the last query returned or counted.
+     *
+     * @return results
+     */
+    public long lastResults() {
+        return results;
+    }
+
+    /**
+     * Returns the number of nodes visited by every query.
+     *
+     * @return nodes visited
+     */
+    public long visited() {
+        return totalVisited;
+    }
+
+    /**
+     * Returns the number of subtrees skipped by every query.
+     *
+     * @return subtrees pruned
+     */
+    public long pruned() {
+        return totalPruned;
+    }
+
+    /**
+     * Returns the number of point to point distances computed by every query.
+     *
+     * @return distances computed
+     */
+    public long distances() {
+        return totalDistances;
+    }
+
+    /**
+     * Returns the depth of the deepest node any query visited.
+     *
+     * @return depth, where the root is at depth {@code 0}
+     */
+    public int maxDepth() {
+        return totalMaxDepth;
+    }
+
+    /**
+     * Returns the number of points returned or counted by every query.
+     *
+     * @return results
+     */
+    public long results() {
+        return totalResults;
+    }
+
+    /**
+     * Returns the number of queries by time taken. Entry {@code 0} counts queries that took no
+     * measurable time and entry {@code i} those that took [2<sup>i - 1</sup>, 2<sup>i</sup>)
+     * nanoseconds.
+     *
+     * @return copy of the latency histogram
+     */
+    public long[] latencyHistogram() {
+        return latencies.clone();
+    }
+
+    /**
+     * Returns the number of queries by nodes visited. Entry {@code 0} counts queries that
+     * visited no node and entry {@code i} those that visited [2<sup>i - 1</sup>, 2<sup>i</sup>)
+     * nodes.
+     *
+     * @return copy of the visit histogram
+     */
+    public long[] visitHistogram() {
+        return visits.clone();
+    }
+
+    /**
+     * Returns the totals as text, with averages per query.
+     *
+     * @return summary of the counters
+     */
+    public String toString() {
+        double n = Math.max(queries, 1);
+        return String.format("%d queries, per query: %.1f visited, %.1f pruned, %.1f distances, "
+                                     + "%.1f results; max depth %d",
+                             queries, totalVisited / n, totalPruned / n, totalDistances / n,
+                             totalResults / n, totalMaxDepth);
+    }
+}
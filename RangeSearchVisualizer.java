@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac RangeSearchVisualizer.java
  *  Execution:    java RangeSearchVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *  Dependencies: PointSET.java KdTree.java PointReader.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Also draw all of the points in the rectangle
@@ -12,7 +12,6 @@
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
 import edu.princeton.cs.algs4.StdDraw;
@@ -23,12 +22,12 @@ public class RangeSearchVisualizer {
 
         // initialize the data structures from file
         String filename = args[0];
-        In in = new In(filename);
+        PointReader in = new PointReader(filename);
         PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
+        for (int i = 0; i < in.size(); i++) {
+            double x = in.x(i);
+            double y = in.y(i);
             Point2D p = new Point2D(x, y);
             kdtree.insert(p);
             brute.insert(p);
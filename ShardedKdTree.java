@@ -0,0 +1,317 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Index that splits the unit square into vertical stripes, each
+ *               with its own KdTree and lock, so inserts into different
+ *               stripes run at the same time. Range searches fan out to the
+ *               stripes they reach in parallel; nearest searches only visit
+ *               the stripes closer than the best point found.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+public class ShardedKdTree {
+    private final Shard[] shards; // shard i owns x coordinates in [i / n, (i + 1) / n)
+
+    /**
+     * Class definition for a Shard, one stripe of the unit square.
+     */
+    private static class Shard {
+        private final KdTree tree = new KdTree(); // points in the stripe
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // guards tree
+    }
+
+    /**
+     * Initialize the index with {@code n} empty stripes.
+     *
+     * @param n number of stripes
+     */
+    public ShardedKdTree(int n) {
+        // Throw an exception if there are no stripes
+        if (n < 1)
+            throw new IllegalArgumentException("ShardedKdTree needs at least one shard");
+
+        shards = new Shard[n];
+        for (int i = 0; i < n; i++)
+            shards[i] = new Shard();
+    }
+
+    /**
+     * Returns the index of the stripe that holds x coordinate {@code x}. Coordinates outside of
+     * the unit square go to the first or last stripe.
+     *
+     * @param x x coordinate
+     * @return index of the stripe
+     */
+    private int shardOf(double x) {
+        int i = (int) (x * shards.length);
+        return Math.max(0, Math.min(shards.length - 1, i));
+    }
+
+    /**
+     * Returns the squared distance from {@code p} to stripe {@code i} along the x axis.
+     *
+     * @param p {@code Point2D}
+     * @param i index of the stripe
+     * @return squared distance to the stripe; {@code 0} if {@code p} is inside it
+     */
+    private double distanceSquaredTo(Point2D p, int i) {
+        // The outer stripes also hold everything beyond the unit square
+        double xmin = (i == 0) ? Double.NEGATIVE_INFINITY : (double) i / shards.length;
+        double xmax = (i == shards.length - 1) ? Double.POSITIVE_INFINITY
+                                               : (double) (i + 1) / shards.length;
+        double dx = (p.x() < xmin) ? xmin - p.x() : (p.x() > xmax) ? p.x() - xmax : 0.0;
+        return dx * dx;
+    }
+
+    /**
+     * Check to see if the index is empty.
+     *
+     * @return {@code true} if there are no points in the index; otherwise, {@code false}
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of points in the index.
+     *
+     * @return number of points
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                size += shard.tree.size();
+            }
+            finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Inserts the Point2D {@code p} if the index does not already contain that point. Only the
+     * stripe holding {@code p} is locked.
+     *
+     * @param p {@code Point2D}
+     */
+    public void insert(Point2D p) {
+        // Throw an exception if the point is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to insert()");
+
+        Shard shard = shards[shardOf(p.x())];
+        shard.lock.writeLock().lock();
+        try {
+            shard.tree.insert(p);
+        }
+        finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the Point2D {@code p} if the index contains it. Only the stripe holding {@code p}
+     * is locked.
+     *
+     * @param p {@code Point2D}
+     */
+    public void remove(Point2D p) {
+        // Throw an exception if the point is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to remove()");
+
+        Shard shard = shards[shardOf(p.x())];
+        shard.lock.writeLock().lock();
+        try {
+            shard.tree.remove(p);
+        }
+        finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check if the point given exists in the index.
+     *
+     * @param p {@code Point2D} point to check exists
+     * @return {@code true} if the point is in the index; {@code false} otherwise
+     */
+    public boolean contains(Point2D p) {
+        // Throw exception if point given is null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to contains()");
+
+        Shard shard = shards[shardOf(p.x())];
+        shard.lock.readLock().lock();
+        try {
+            return shard.tree.contains(p);
+        }
+        finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all the points inside of given rectangle by searching the stripes it overlaps in
+     * parallel.
+     *
+     * @param rect {@code RectHV} indicating the region to search
+     * @return the points inside of {@code rect}
+     */
+    public Iterable<Point2D> range(RectHV rect) {
+        // Throw an exception if the rectangle is null
+        if (rect == null)
+            throw new IllegalArgumentException("Null argument to range()");
+
+        // A rectangle inside one stripe is not worth handing to other threads
+        int first = shardOf(rect.xmin());
+        int last = shardOf(rect.xmax());
+        if (first == last)
+            return range(shards[first], rect);
+
+        // Each stripe fills its own stack, which are merged once all of them are done
+        Stack<Point2D> inside = new Stack<Point2D>();
+        IntStream.rangeClosed(first, last)
+                 .parallel()
+                 .mapToObj(i -> range(shards[i], rect))
+                 .forEachOrdered(found -> {
+                     for (Point2D p : found)
+                         inside.push(p);
+                 });
+        return inside;
+    }
+
+    /**
+     * Helper function to search one stripe for points inside of {@code rect}.
+     *
+     * @param shard {@code Shard} to search
+     * @param rect  {@code RectHV} indicating the region to search
+     * @return the points of the stripe inside of {@code rect}
+     */
+    private static Stack<Point2D> range(Shard shard, RectHV rect) {
+        Stack<Point2D> found = new Stack<Point2D>();
+        shard.lock.readLock().lock();
+        try {
+            shard.tree.range(rect, found::push);
+        }
+        finally {
+            shard.lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Locates the nearest point in the index to the queried point. The stripe holding the point
+     * is searched first, then the stripes on either side moving outward, until the next stripe is
+     * farther away than the best point found. Each stripe is read locked only while it is
+     * searched.
+     *
+     * @param p {@code Point2D} queried point
+     * @return {@code Point2D} point in the index closest to {@code p}
+     */
+    public Point2D nearest(Point2D p) {
+        // Throw exception if given null
+        if (p == null)
+            throw new IllegalArgumentException("Null argument to nearest()");
+
+        int home = shardOf(p.x());
+        Point2D best = nearest(shards[home], p);
+        double bestD = (best == null) ? Double.POSITIVE_INFINITY : best.distanceSquaredTo(p);
+        int left = home - 1;
+        int right = home + 1;
+        while (true) {
+            double leftD = (left >= 0) ? distanceSquaredTo(p, left) : Double.POSITIVE_INFINITY;
+            double rightD = (right < shards.length) ? distanceSquaredTo(p, right)
+                                                    : Double.POSITIVE_INFINITY;
+            // Every stripe left is farther than the best point
+            if (Math.min(leftD, rightD) >= bestD)
+                return best;
+
+            int next = (leftD <= rightD) ? left-- : right++;
+            Point2D q = nearest(shards[next], p);
+            if (q != null && q.distanceSquaredTo(p) < bestD) {
+                best = q;
+                bestD = q.distanceSquaredTo(p);
+            }
+        }
+    }
+
+    /**
+     * Helper function to find the nearest point to {@code p} in one stripe.
+     *
+     * @param shard {@code Shard} to search
+     * @param p     {@code Point2D} queried point
+     * @return {@code Point2D} closest point of the stripe, or {@code null} if it is empty
+     */
+    private static Point2D nearest(Shard shard, Point2D p) {
+        shard.lock.readLock().lock();
+        try {
+            return shard.tree.nearest(p);
+        }
+        finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    // Test Cases
+    public static void main(String[] args) throws InterruptedException {
+        // Test 5.1: concurrent insert() & queries
+        String[] input = {
+                "input10-4x4-d.txt", "input20K-1x1-d.txt", "input100K.txt"
+        };
+        System.out.println("Test 5.1: concurrent insert() & queries");
+        for (String string : input) {
+            System.out.println(string);
+            Point2D[] points = new PointReader(string).points();
+            PointSET brute = new PointSET();
+            for (int i = 0; i < points.length; i++)
+                brute.insert(points[i]);
+
+            // Four writers insert every fourth point
+            ShardedKdTree index = new ShardedKdTree(8);
+            Thread[] writers = new Thread[4];
+            for (int w = 0; w < writers.length; w++) {
+                final int first = w;
+                writers[w] = new Thread(() -> {
+                    for (int i = first; i < points.length; i += writers.length)
+                        index.insert(points[i]);
+                });
+                writers[w].start();
+            }
+            for (Thread writer : writers)
+                writer.join();
+
+            boolean same = index.size() == brute.size();
+            for (Point2D p : points)
+                same = same && index.contains(p);
+            for (int i = 0; i < 100; i++) {
+                Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+                same = same && brute.nearest(p).distanceSquaredTo(p)
+                        == index.nearest(p).distanceSquaredTo(p);
+                double xmin = StdRandom.uniform(0.0, 1.0);
+                double xmax = StdRandom.uniform(xmin, 1.0);
+                double ymin = StdRandom.uniform(0.0, 1.0);
+                double ymax = StdRandom.uniform(ymin, 1.0);
+                RectHV r = new RectHV(xmin, ymin, xmax, ymax);
+                int expected = 0;
+                for (Point2D t : brute.range(r))
+                    expected += 1;
+                int found = 0;
+                for (Point2D t : index.range(r))
+                    found += 1;
+                same = same && expected == found;
+            }
+            System.out.println("matches PointSET: " + same);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* *****************************************************************************
+ *  Name: Willy Chang
+ *  Date:
+ *  Description: Z-order (Morton) and Hilbert curves over a 65536 x 65536 grid
+ *               on the unit square. Sorting points by their key puts points
+ *               that are close in the plane close together in the order, so
+ *               storing or querying points in that order keeps neighbors on
+ *               the same cache lines.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+public enum SpaceFillingCurve {
+    /**
+     * Z-order curve: the bits of the column and row interleaved.
+     */
+    MORTON {
+        long key(int column, int row) {
+            return spread(column) | spread(row) << 1;
+        }
+    },
+
+    /**
+     * Hilbert curve: consecutive keys always belong to neighboring cells.
+     */
+    HILBERT {
+        long key(int column, int row) {
+            long d = 0;
+            for (int s = SIDE / 2; s > 0; s /= 2) {
+                int rx = ((column & s) > 0) ? 1 : 0;
+                int ry = ((row & s) > 0) ? 1 : 0;
+                d += (long) s * s * ((3 * rx) ^ ry);
+                // Rotate the quadrant so the curve inside it starts and ends in the right corners
+                if (ry == 0) {
+                    if (rx == 1) {
+                        column = SIDE - 1 - column;
+                        row = SIDE - 1 - row;
+                    }
+                    int temp = column;
+                    column = row;
+                    row = temp;
+                }
+            }
+            return d;
+        }
+    };
+
+    private static final int SIDE = 1 << 16; // cells per side of the grid
+
+    /**
+     * Returns the position of the cell at {@code column} and {@code row} along the curve.
+     *
+     * @param column column of the cell, in [0, 65536)
+     * @param row    row of the cell, in [0, 65536)
+     * @return position along the curve, in [0, 2<sup>32</sup>)
+     */
+    abstract long key(int column, int row);
+
+    /**
+     * Returns the position along the curve of the cell holding ({@code x}, {@code y}). Points
+     * outside the unit square get the key of the nearest border cell.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return position along the curve, in [0, 2<sup>32</sup>)
+     */
+    public long key(double x, double y) {
+        return key(cell(x), cell(y));
+    }
+
+    /**
+     * Returns the indices of the points ({@code x[i]}, {@code y[i]}) sorted by key. Points in
+     * the same cell keep their relative order.
+     *
+     * @param x x coordinates of the points
+     * @param y y coordinates of the points
+     * @return permutation of {@code 0..n-1} in curve order
+     */
+    public int[] order(double[] x, double[] y) {
+        // Throw an exception if the arrays are null or do not line up
+        if (x == null || y == null)
+            throw new IllegalArgumentException("Null argument to order()");
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Coordinate arrays have different lengths");
+
+        // A key fits in 32 bits, so pack it above the index and sort plain longs; flipping the
+        // sign bit makes the signed sort order the unsigned one
+        long[] packed = new long[x.length];
+        for (int i = 0; i < x.length; i++)
+            packed[i] = (key(x[i], y[i]) << 32 | i) ^ Long.MIN_VALUE;
+        Arrays.sort(packed);
+        int[] order = new int[x.length];
+        for (int i = 0; i < x.length; i++)
+            order[i] = (int) packed[i];
+        return order;
+    }
+
+    /**
+     * Returns the indices of {@code points} sorted by key. Points in the same cell keep their
+     * relative order.
+     *
+     * @param points {@code Point2D[]} points to order
+     * @return permutation of {@code 0..n-1} in curve order
+     */
+    public int[] order(Point2D[] points) {
+        // Throw an exception if the points or any of the points are null
+        if (points == null)
+            throw new IllegalArgumentException("Null argument to order()");
+        double[] x = new double[points.length];
+        double[] y = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null)
+                throw new IllegalArgumentException("Null point in argument to order()");
+            x[i] = points[i].x();
+            y[i] = points[i].y();
+        }
+        return order(x, y);
+    }
+
+    /**
+     * Returns the column or row of the grid holding coordinate {@code v}.
+     *
+     * @param v coordinate
+     * @return column or row, clamped to the grid
+     */
+    private static int cell(double v) {
+        int c = (int) (v * SIDE);
+        return (c < 0) ? 0 : (c >= SIDE) ? SIDE - 1 : c;
+    }
+
+    /**
+     * Spreads the 16 low bits of {@code v} out to the even bits of the result.
+     *
+     * @param v value to spread
+     * @return {@code v} with a zero bit after each of its bits
+     */
+    private static long spread(int v) {
+        long s = v & 0xFFFFL;
+        s = (s | s << 8) & 0x00FF00FFL;
+        s = (s | s << 4) & 0x0F0F0F0FL;
+        s = (s | s << 2) & 0x33333333L;
+        s = (s | s << 1) & 0x55555555L;
+        return s;
+    }
+
+    // Test Cases
+    public static void main(String[] args) {
+        // Test 11.1: every cell of a grid gets its own key, and Hilbert neighbors are adjacent
+        // (Morton jumps between quadrants, so only its keys are checked)
+        System.out.println("Test 11.1: key() & order()");
+        int side = 256;
+        double[] x = new double[side * side];
+        double[] y = new double[side * side];
+        for (int i = 0; i < side * side; i++) {
+            x[i] = (i % side + 0.5) / side;
+            y[i] = (i / side + 0.5) / side;
+        }
+        for (SpaceFillingCurve curve : values()) {
+            int[] order = curve.order(x, y);
+            boolean distinct = true;
+            boolean adjacent = true;
+            for (int i = 1; i < order.length; i++) {
+                distinct = distinct && curve.key(x[order[i - 1]], y[order[i - 1]])
+                        < curve.key(x[order[i]], y[order[i]]);
+                double step = Math.abs(x[order[i]] - x[order[i - 1]])
+                        + Math.abs(y[order[i]] - y[order[i - 1]]);
+                adjacent = adjacent && Math.abs(step - 1.0 / side) < 1e-9;
+            }
+            if (curve == HILBERT)
+                System.out.println(curve + " distinct keys: " + distinct + ", adjacent steps: "
+                                           + adjacent);
+            else
+                System.out.println(curve + " distinct keys: " + distinct);
+        }
+
+        // Test 11.2: order() is a permutation for random points, including outside the square
+        System.out.println("Test 11.2: order() is a permutation");
+        Point2D[] points = new Point2D[10000];
+        for (int i = 0; i < points.length; i++)
+            points[i] = new Point2D(StdRandom.uniform(-0.5, 1.5), StdRandom.uniform(-0.5, 1.5));
+        for (SpaceFillingCurve curve : values()) {
+            int[] order = curve.order(points);
+            boolean[] seen = new boolean[points.length];
+            boolean permutation = order.length == points.length;
+            for (int i : order) {
+                permutation = permutation && !seen[i];
+                seen[i] = true;
+            }
+            System.out.println(curve + " permutation: " + permutation);
+        }
+    }
+}